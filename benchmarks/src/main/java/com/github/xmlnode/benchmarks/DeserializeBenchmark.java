@@ -0,0 +1,52 @@
+package com.github.xmlnode.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.xmlnode.XmlNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializeBenchmark {
+
+    @Benchmark
+    public XmlNode deserialize(DocumentState state) throws IOException {
+        return state.reader.readValue(state.xml);
+    }
+
+    @Benchmark
+    public XmlNode deserializeParallel(DocumentState state) throws IOException {
+        return state.codec.readParallel(state.xml);
+    }
+
+    @Benchmark
+    public XmlNode deserializeProjected(DocumentState state) throws IOException {
+        return state.projectingCodec.read(state.xml);
+    }
+
+    @Benchmark
+    public XmlNode deserializePooled(DocumentState state) throws IOException {
+        XmlNode node = state.pooledCodec.read(state.xml);
+        state.pool.release(node);
+        return node;
+    }
+
+    @Benchmark
+    public XmlNode decodeBinary(DocumentState state) throws IOException {
+        return state.codec.readBinary(new ByteArrayInputStream(state.binary));
+    }
+
+    @Benchmark
+    public JsonNode deserializeLazyAndReadOne(DocumentState state) throws IOException {
+        return state.codec.readLazy(state.xml).get(0);
+    }
+}
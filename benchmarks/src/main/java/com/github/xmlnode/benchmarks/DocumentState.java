@@ -0,0 +1,62 @@
+package com.github.xmlnode.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.github.xmlnode.XmlNode;
+import com.github.xmlnode.XmlNodeCodec;
+import com.github.xmlnode.XmlNodePool;
+import com.github.xmlnode.XmlPath;
+import com.github.xmlnode.XmlTemplate;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+@State(Scope.Benchmark)
+public class DocumentState {
+    @Param({"SOAP", "WIDE", "DEEP"})
+    public Documents.Shape shape;
+
+    public String xml;
+    public XmlNode node;
+    public ObjectReader reader;
+    public ObjectWriter writer;
+    public XmlNodeCodec codec;
+    public byte[] binary;
+    public XmlPath deepestPath;
+    public XmlNodeCodec projectingCodec;
+    public XmlNodePool pool;
+    public XmlNodeCodec pooledCodec;
+    // The document with the content of its deepest element turned into a hole
+    public XmlTemplate template;
+    public Map<String, Object> templateValues;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        XmlMapper xmlMapper = Documents.newXmlMapper();
+        this.xml = this.shape.xml();
+        this.reader = xmlMapper.readerFor(XmlNode.class);
+        this.writer = xmlMapper.writer().withRootName(this.shape.getRootName());
+        this.node = this.reader.readValue(this.xml);
+        this.codec = XmlNodeCodec.of(xmlMapper).withRootName(this.shape.getRootName());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        this.codec.writeBinary(this.node, bytes);
+        this.binary = bytes.toByteArray();
+        this.deepestPath = XmlPath.compile("//" + this.shape.getDeepestName());
+        this.projectingCodec = this.codec.withProjection(XmlPath.compile(this.shape.getProjectionPath()));
+        this.pool = new XmlNodePool(200_000);
+        this.pooledCodec = this.codec.withPool(this.pool);
+        XmlNode template = this.node.copyOnWrite();
+        XmlNode deepest = this.deepestPath.selectFirst(template);
+        this.templateValues = Collections.singletonMap("value", deepest.get("@text").asText());
+        deepest.removeAll().setValue(XmlTemplate.hole("value"));
+        this.template = this.codec.compileTemplate(template);
+    }
+}
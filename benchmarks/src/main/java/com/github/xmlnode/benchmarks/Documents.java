@@ -0,0 +1,114 @@
+package com.github.xmlnode.benchmarks;
+
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.github.xmlnode.XmlNodeModule;
+
+public final class Documents {
+    public static final int WIDE_SIBLINGS = 100_000;
+    public static final int DEEP_DEPTH = 1_000;
+
+    private Documents() {
+    }
+
+    public enum Shape {
+        SOAP("soapenv:Envelope", "Body", "Temperature", "Body/GetWeatherResponse/Forecast/Day[2]"),
+        WIDE("feed", "record" + (WIDE_SIBLINGS - 1), "record" + (WIDE_SIBLINGS - 1), "record" + (WIDE_SIBLINGS - 1)),
+        DEEP("level", "level", "leaf", "//leaf");
+
+        private final String rootName;
+        // The local name of the last direct child of the root
+        private final String lastChildName;
+        private final String deepestName;
+        // A path selecting a small part of the document
+        private final String projectionPath;
+
+        Shape(String rootName, String lastChildName, String deepestName, String projectionPath) {
+            this.rootName = rootName;
+            this.lastChildName = lastChildName;
+            this.deepestName = deepestName;
+            this.projectionPath = projectionPath;
+        }
+
+        public String getRootName() {
+            return this.rootName;
+        }
+
+        public String getLastChildName() {
+            return this.lastChildName;
+        }
+
+        public String getDeepestName() {
+            return this.deepestName;
+        }
+
+        public String getProjectionPath() {
+            return this.projectionPath;
+        }
+
+        public String xml() {
+            switch (this) {
+                case SOAP:
+                    return soap();
+                case WIDE:
+                    return wide(WIDE_SIBLINGS);
+                case DEEP:
+                    return deep(DEEP_DEPTH);
+                default:
+                    throw new IllegalStateException(this.name());
+            }
+        }
+    }
+
+    public static XmlMapper newXmlMapper() {
+        // The deep document nests beyond Jackson's default 1000-level write limit once the root is counted.
+        XmlFactory factory = XmlFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(DEEP_DEPTH * 2).build())
+                .streamWriteConstraints(StreamWriteConstraints.builder().maxNestingDepth(DEEP_DEPTH * 2).build())
+                .build();
+        XmlMapper xmlMapper = new XmlMapper(factory);
+        xmlMapper.registerModule(new XmlNodeModule());
+        return xmlMapper;
+    }
+
+    public static String soap() {
+        return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">\n" +
+                "  <soapenv:Header>\n" +
+                "    <ns1:AuthToken xmlns:ns1=\"http://example.com/weather\">ABC123</ns1:AuthToken>\n" +
+                "  </soapenv:Header>\n" +
+                "  <soapenv:Body>\n" +
+                "    <ns1:GetWeatherResponse xmlns:ns1=\"http://example.com/weather\">\n" +
+                "      <ns1:Forecast>\n" +
+                "        <ns1:Day date=\"2023-10-01\">\n" +
+                "          <ns1:Temperature unit=\"F\">72</ns1:Temperature>\n" +
+                "        </ns1:Day>\n" +
+                "        <ns1:Day date=\"2023-10-02\">\n" +
+                "          <ns1:Temperature unit=\"F\">68</ns1:Temperature>\n" +
+                "        </ns1:Day>\n" +
+                "      </ns1:Forecast>\n" +
+                "    </ns1:GetWeatherResponse>\n" +
+                "  </soapenv:Body>\n" +
+                "</soapenv:Envelope>";
+    }
+
+    public static String wide(int siblings) {
+        StringBuilder sb = new StringBuilder(siblings * 48);
+        sb.append("<feed>");
+        for (int i = 0; i < siblings; i++)
+            sb.append("<record").append(i).append(" id=\"").append(i).append("\">value ")
+                    .append(i).append("</record").append(i).append('>');
+        return sb.append("</feed>").toString();
+    }
+
+    public static String deep(int depth) {
+        StringBuilder sb = new StringBuilder(depth * 20);
+        for (int i = 0; i < depth - 1; i++)
+            sb.append("<level depth=\"").append(i).append("\">");
+        sb.append("<leaf>bottom</leaf>");
+        for (int i = 0; i < depth - 1; i++)
+            sb.append("</level>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.xmlnode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Benchmark
+    public String serialize(DocumentState state) throws IOException {
+        return state.writer.writeValueAsString(state.node);
+    }
+
+    @Benchmark
+    public String serializeDirect(DocumentState state) throws IOException {
+        return state.codec.writeDirect(state.node);
+    }
+
+    @Benchmark
+    public byte[] serializeDirectBytes(DocumentState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        state.codec.writeDirect(state.node, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] renderTemplate(DocumentState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        state.template.render(state.templateValues, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializeParallel(DocumentState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        state.codec.writeParallel(state.node, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String toStringDefault(DocumentState state) {
+        return state.node.toString();
+    }
+}
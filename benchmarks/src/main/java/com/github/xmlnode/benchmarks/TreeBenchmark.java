@@ -0,0 +1,73 @@
+package com.github.xmlnode.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.xmlnode.XmlNode;
+import com.github.xmlnode.XmlNodeVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeBenchmark {
+
+    @Benchmark
+    public JsonNode getLastChild(DocumentState state) {
+        return state.node.get(state.shape.getLastChildName());
+    }
+
+    @Benchmark
+    public JsonNode findValueHit(DocumentState state) {
+        return state.node.findValue(state.shape.getDeepestName());
+    }
+
+    @Benchmark
+    public XmlNode selectPathHit(DocumentState state) {
+        return state.deepestPath.selectFirst(state.node);
+    }
+
+    @Benchmark
+    public JsonNode findValueMiss(DocumentState state) {
+        return state.node.findValue("absent");
+    }
+
+    @Benchmark
+    public XmlNode deepCopy(DocumentState state) {
+        return state.node.deepCopy();
+    }
+
+    @Benchmark
+    public XmlNode copyOnWriteAndEdit(DocumentState state) {
+        XmlNode copy = state.node.copyOnWrite();
+        ((XmlNode) copy.get(state.shape.getLastChildName())).putAttribute("edited", true);
+        return copy;
+    }
+
+    @Benchmark
+    public int iterateElements(DocumentState state) {
+        int count = 0;
+        for (Iterator<JsonNode> elements = state.node.elements(); elements.hasNext(); elements.next())
+            count++;
+        return count;
+    }
+
+    @Benchmark
+    public int visitTree(DocumentState state) {
+        int[] count = new int[1];
+        state.node.accept(new XmlNodeVisitor() {
+            @Override
+            public boolean enter(String name, String prefix, XmlNode element) {
+                count[0]++;
+                return true;
+            }
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.xmlnode;
+
+/**
+ * Layout shared by {@link XmlNodeBinaryWriter} and {@link XmlNodeBinaryReader}.
+ * <pre>
+ * stream   := MAGIC VERSION document*
+ * document := DOCUMENT element
+ * element  := flags                                        which of the next three sections are present
+ *             [count (string:prefix string:uri)*]          namespace declarations
+ *             [count (string:name string:prefix value)*]   attributes, prefix is null when unprefixed
+ *             [count (string:name string:prefix)*]         element name -> prefix mappings
+ *             count (string:name child)*
+ * child    := ELEMENT element | LEAF value | value         LEAF: element holding nothing but one value
+ * value    := tag payload
+ * string   := varint 0 (null) | varint 1, varint length, UTF-8 bytes (new entry) | varint index + 2
+ * </pre>
+ * Counts and lengths are unsigned varints, int/long/short values zig-zag varints. Names, prefixes and URIs share one
+ * table; text values up to {@link #SHARED_VALUE_LENGTH} chars go into a second, bounded table. Both tables grow as
+ * strings are first seen and persist across the documents of one stream, so the writer needs no pre-pass.
+ */
+final class BinaryFormat {
+    static final byte[] MAGIC = {'X', 'N', 'B'};
+    static final int VERSION = 1;
+    static final int DOCUMENT = 0x01;
+
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int FIRST_INDEX = 2;
+
+    static final int SHARED_VALUE_LENGTH = 16;
+    static final int VALUE_TABLE_CAPACITY = 8192;
+
+    // Child and value tags; children that were added as element values carry VALUE_NODE
+    static final int ELEMENT = 1;
+    static final int TEXT = 2;
+    static final int CDATA = 3;
+    static final int INT = 4;
+    static final int LONG = 5;
+    static final int SHORT = 6;
+    static final int DOUBLE = 7;
+    static final int FLOAT = 8;
+    static final int TRUE = 9;
+    static final int FALSE = 10;
+    static final int NULL = 11;
+    static final int BINARY = 12;
+    static final int BIG_INTEGER = 13;
+    static final int DECIMAL = 14;
+    static final int LEAF = 15;
+    static final int VALUE_NODE = 0x80;
+
+    // Element flags
+    static final int HAS_NAMESPACES = 1;
+    static final int HAS_ATTRIBUTES = 2;
+    static final int HAS_PREFIXES = 4;
+
+    private BinaryFormat() {
+    }
+
+    static boolean isSharedValue(String value) {
+        return value.length() <= SHARED_VALUE_LENGTH;
+    }
+
+    // A text-only element without attributes or namespaces is encoded as just its value
+    static boolean isPlainLeaf(XmlNode node) {
+        return node.isLeaf() && node._attributes.isEmpty() && node._namespacePrefixURIMapping.isEmpty()
+                && node._elementPrefixMapping.isEmpty() && "@text".equals(node._children.get(0).getAttributeName());
+    }
+}
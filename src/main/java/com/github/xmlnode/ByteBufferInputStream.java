@@ -0,0 +1,86 @@
+package com.github.xmlnode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Feeds a {@link ByteBuffer}, or a file mapped region by region, straight into the parser's input buffer. Regions
+ * are mapped read-only as the parser reaches them, so files larger than one mapping (2 GB) can be read and no
+ * {@code read} system calls or stream buffers sit between the page cache and the parser.
+ */
+final class ByteBufferInputStream extends InputStream {
+    static final long REGION_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long regionSize;
+    private long mapped;
+    private ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.channel = null;
+        this.regionSize = 0;
+        this.buffer = buffer;
+    }
+
+    ByteBufferInputStream(FileChannel channel, long regionSize) {
+        this.channel = channel;
+        this.regionSize = regionSize;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    private boolean ensureRemaining() throws IOException {
+        if (this.buffer.hasRemaining())
+            return true;
+        if (this.channel == null)
+            return false;
+        long size = this.channel.size();
+        if (this.mapped >= size)
+            return false;
+        long length = Math.min(this.regionSize, size - this.mapped);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.mapped, length);
+        this.mapped += length;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return this.ensureRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!this.ensureRemaining())
+            return -1;
+        int n = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && this.ensureRemaining()) {
+            int step = (int) Math.min(n - skipped, this.buffer.remaining());
+            // Buffer.position(int) keeps the call binary compatible with Java 8 runtimes
+            ((Buffer) this.buffer).position(this.buffer.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null)
+            this.channel.close();
+    }
+}
@@ -2,8 +2,33 @@ package com.github.xmlnode;
 
 import com.fasterxml.jackson.databind.node.TextNode;
 
+/**
+ * Text that is written as a CDATA section. The node holds the section content only; the markup is produced by the
+ * generator when the owning {@link XmlNode} is serialized.
+ */
 public class CDATANode extends TextNode {
+    private static final String SECTION_START = "<![CDATA[";
+    private static final String SECTION_END = "]]>";
+
+    /**
+     * @param v the section content; a complete {@code <![CDATA[...]]>} section is also accepted and unwrapped
+     */
     public CDATANode(String v) {
-        super(v);
+        super(unwrap(v));
+    }
+
+    private CDATANode(String content, boolean raw) {
+        super(content);
+    }
+
+    static CDATANode ofContent(String content) {
+        return new CDATANode(content, true);
+    }
+
+    private static String unwrap(String v) {
+        if (v != null && v.length() >= SECTION_START.length() + SECTION_END.length()
+                && v.startsWith(SECTION_START) && v.endsWith(SECTION_END))
+            return v.substring(SECTION_START.length(), v.length() - SECTION_END.length());
+        return v;
     }
 }
@@ -0,0 +1,187 @@
+package com.github.xmlnode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Insertion-ordered map that keeps up to {@link #INLINE_CAPACITY} entries in a single key/value array and switches
+ * to a {@link LinkedHashMap} beyond that. Most elements carry a handful of attributes and namespace declarations, so
+ * the per-entry objects and hash tables of the JDK maps are pure overhead for them. Null keys are allowed (the
+ * default namespace prefix can be null).
+ */
+class CompactMap<V> extends AbstractMap<String, V> {
+    static final int INLINE_CAPACITY = 8;
+
+    // k0, v0, k1, v1, ... while inline; null once the entries moved to overflow
+    private Object[] table;
+    private int size;
+    private LinkedHashMap<String, V> overflow;
+    private int modCount;
+
+    CompactMap() {
+        this.table = new Object[4];
+    }
+
+    CompactMap(Map<String, ? extends V> source) {
+        this.table = new Object[Math.max(4, Math.min(source.size(), INLINE_CAPACITY) * 2)];
+        this.putAll(source);
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < this.size * 2; i += 2)
+            if (Objects.equals(this.table[i], key))
+                return i;
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.overflow != null ? this.overflow.size() : this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.overflow != null ? this.overflow.containsKey(key) : this.indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (this.overflow != null)
+            return this.overflow.get(key);
+        int i = this.indexOf(key);
+        return i < 0 ? null : (V) this.table[i + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+        if (this.overflow != null)
+            return this.overflow.put(key, value);
+        int i = this.indexOf(key);
+        if (i >= 0) {
+            V previous = (V) this.table[i + 1];
+            this.table[i + 1] = value;
+            return previous;
+        }
+        if (this.size == INLINE_CAPACITY) {
+            LinkedHashMap<String, V> map = new LinkedHashMap<>(INLINE_CAPACITY * 4);
+            for (int j = 0; j < this.size * 2; j += 2)
+                map.put((String) this.table[j], (V) this.table[j + 1]);
+            map.put(key, value);
+            this.overflow = map;
+            this.table = null;
+            this.size = 0;
+        } else {
+            if (this.size * 2 == this.table.length)
+                this.table = Arrays.copyOf(this.table, Math.min(this.table.length * 2, INLINE_CAPACITY * 2));
+            this.table[this.size * 2] = key;
+            this.table[this.size * 2 + 1] = value;
+            this.size++;
+        }
+        this.modCount++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (this.overflow != null)
+            return this.overflow.remove(key);
+        int i = this.indexOf(key);
+        return i < 0 ? null : this.removeAt(i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeAt(int i) {
+        V previous = (V) this.table[i + 1];
+        System.arraycopy(this.table, i + 2, this.table, i, this.size * 2 - i - 2);
+        this.size--;
+        this.table[this.size * 2] = null;
+        this.table[this.size * 2 + 1] = null;
+        this.modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (this.overflow != null) {
+            this.overflow = null;
+            this.table = new Object[4];
+        } else {
+            Arrays.fill(this.table, null);
+        }
+        this.size = 0;
+        this.modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        if (this.overflow != null)
+            return this.overflow.entrySet();
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                if (CompactMap.this.overflow != null)
+                    return CompactMap.this.overflow.entrySet().iterator();
+                return new InlineIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactMap.this.size();
+            }
+        };
+    }
+
+    private final class InlineIterator implements Iterator<Entry<String, V>> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = CompactMap.this.modCount;
+
+        @Override
+        public boolean hasNext() {
+            return this.next < CompactMap.this.size * 2;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<String, V> next() {
+            if (CompactMap.this.modCount != this.expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            this.last = this.next;
+            this.next += 2;
+            int i = this.last;
+            return new SimpleEntry<String, V>((String) CompactMap.this.table[i], (V) CompactMap.this.table[i + 1]) {
+                @Override
+                public V setValue(V value) {
+                    if (CompactMap.this.modCount != InlineIterator.this.expectedModCount)
+                        throw new ConcurrentModificationException();
+                    CompactMap.this.table[i + 1] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0)
+                throw new IllegalStateException();
+            if (CompactMap.this.modCount != this.expectedModCount)
+                throw new ConcurrentModificationException();
+            CompactMap.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = CompactMap.this.modCount;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Child element whose subtree is only parsed when {@link #getNode()} is first called. Until then it is just a char
+ * range of the retained source document plus the namespace bindings in scope at that point, and it serializes by
+ * copying that range verbatim.
+ */
+class LazyChildNode extends ChildNode {
+    static final String WRAPPER_NAME = "lazy-scope";
+
+    private final Source source;
+    private final int start;
+    private final int end;
+    // Bindings declared by the ancestors of this element (prefix "" is the default namespace), needed to parse the
+    // range on its own. Shared by all lazy siblings.
+    private final Map<String, String> scope;
+
+    private LazyChildNode(String attributeName, Source source, int start, int end, Map<String, String> scope) {
+        super(attributeName, null);
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.scope = scope;
+    }
+
+    static XmlNode parse(String xml, XMLInputFactory inputFactory, JsonNodeFactory nodeFactory,
+                         XmlNode.XmlNodeDeserializer deserializer) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(xml));
+        try {
+            boolean dtd = false;
+            int event;
+            while ((event = reader.next()) != XMLStreamConstants.START_ELEMENT)
+                dtd |= event == XMLStreamConstants.DTD;
+            XmlNode root = new XmlNode(nodeFactory);
+            if (dtd || !(reader instanceof XMLStreamReader2))
+                // Entities declared in a DTD would be unknown to a range parsed on its own, and char offsets and
+                // skipElement() are Stax2 features; in either case fall back to a full parse.
+                return deserializer.readElement(reader, root);
+            deserializer.readRootAttributes(reader, root);
+            Source source = new Source(xml, inputFactory, nodeFactory, deserializer);
+            readContent((XMLStreamReader2) reader, root, source, 0, extendScope(Collections.emptyMap(), reader));
+            return root;
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Reads the content of the element the reader has just entered up to its END_ELEMENT. Text is materialized right
+    // away; child elements are skipped and recorded as lazy ranges. delta converts reader offsets to source offsets.
+    private static void readContent(XMLStreamReader2 reader, XmlNode node, Source source, int delta,
+                                    Map<String, String> scope) throws XMLStreamException {
+        TextBuffer text = new TextBuffer();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    text.flush(node, source.deserializer.getSymbols());
+                    source.deserializer.registerChildNamespaces(reader, node);
+                    String name = source.deserializer.getSymbols().symbol(reader.getLocalName());
+                    int start = (int) reader.getLocationInfo().getStartingCharOffset() + delta;
+                    reader.skipElement();
+                    int end = (int) reader.getLocationInfo().getEndingCharOffset() + delta;
+                    node.addChild(new LazyChildNode(name, source, start, end, scope));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    text.flush(node, source.deserializer.getSymbols());
+                    return;
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader);
+                    break;
+            }
+        }
+    }
+
+    static Map<String, String> extendScope(Map<String, String> scope, XMLStreamReader reader) {
+        if (reader.getNamespaceCount() == 0)
+            return scope;
+        Map<String, String> extended = new HashMap<>(scope);
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            extended.put(prefix == null ? "" : prefix, reader.getNamespaceURI(i));
+        }
+        return extended;
+    }
+
+    boolean isMaterialized() {
+        return super.getNode() != null;
+    }
+
+    @Override
+    public JsonNode getNode() {
+        JsonNode node = super.getNode();
+        if (node == null) {
+            node = this.materialize();
+            this.setNode(node);
+        }
+        return node;
+    }
+
+    void writeRaw(ToXmlGenerator xmlGenerator) throws IOException {
+        xmlGenerator.writeRaw(this.source.xml, this.start, this.end - this.start);
+    }
+
+    void writeRaw(XMLStreamWriter2 xmlWriter) throws XMLStreamException {
+        xmlWriter.writeRaw(this.source.xml, this.start, this.end - this.start);
+    }
+
+    private XmlNode materialize() {
+        String header = scopeHeader(this.scope);
+        Reader in = new RangeReader(header, this.source.xml, this.start, this.end, "</" + WRAPPER_NAME + ">");
+        try {
+            XMLStreamReader2 reader = (XMLStreamReader2) this.source.inputFactory.createXMLStreamReader(in);
+            try {
+                reader.nextTag();
+                reader.nextTag();
+                XmlNode node = new XmlNode(this.source.nodeFactory);
+                this.source.deserializer.readChildAttributes(reader, node);
+                readContent(reader, node, this.source, this.start - header.length(), extendScope(this.scope, reader));
+                return node;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Start tag of a wrapper element that declares scope, so that a range can be parsed on its own
+    static String scopeHeader(Map<String, String> scope) {
+        StringBuilder sb = new StringBuilder(32 + scope.size() * 48).append('<').append(WRAPPER_NAME);
+        for (Map.Entry<String, String> binding : scope.entrySet()) {
+            sb.append(binding.getKey().isEmpty() ? " xmlns" : " xmlns:").append(binding.getKey()).append("=\"");
+            String uri = binding.getValue();
+            for (int i = 0; i < uri.length(); i++) {
+                char c = uri.charAt(i);
+                if (c == '&')
+                    sb.append("&amp;");
+                else if (c == '<')
+                    sb.append("&lt;");
+                else if (c == '"')
+                    sb.append("&quot;");
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.append('>').toString();
+    }
+
+    private static final class Source {
+        private final String xml;
+        private final XMLInputFactory inputFactory;
+        private final JsonNodeFactory nodeFactory;
+        private final XmlNode.XmlNodeDeserializer deserializer;
+
+        private Source(String xml, XMLInputFactory inputFactory, JsonNodeFactory nodeFactory,
+                       XmlNode.XmlNodeDeserializer deserializer) {
+            this.xml = xml;
+            this.inputFactory = inputFactory;
+            this.nodeFactory = nodeFactory;
+            this.deserializer = deserializer;
+        }
+    }
+
+    // header + xml[start, end) + footer, without copying the range.
+    static final class RangeReader extends Reader {
+        private final String header;
+        private final String xml;
+        private final int start;
+        private final int end;
+        private final String footer;
+        private int position;
+
+        RangeReader(String header, String xml, int start, int end, String footer) {
+            this.header = header;
+            this.xml = xml;
+            this.start = start;
+            this.end = end;
+            this.footer = footer;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int total = this.header.length() + (this.end - this.start) + this.footer.length();
+            if (this.position >= total)
+                return -1;
+            int read = 0;
+            while (read < length && this.position < total) {
+                String segment;
+                int segmentStart;
+                int segmentEnd;
+                if (this.position < this.header.length()) {
+                    segment = this.header;
+                    segmentStart = this.position;
+                    segmentEnd = this.header.length();
+                } else if (this.position < this.header.length() + (this.end - this.start)) {
+                    segment = this.xml;
+                    segmentStart = this.start + this.position - this.header.length();
+                    segmentEnd = this.end;
+                } else {
+                    segment = this.footer;
+                    segmentStart = this.position - this.header.length() - (this.end - this.start);
+                    segmentEnd = this.footer.length();
+                }
+                int count = Math.min(length - read, segmentEnd - segmentStart);
+                segment.getChars(segmentStart, segmentStart + count, buffer, offset + read);
+                read += count;
+                this.position += count;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses one document with the elements at a given depth spread over a fork-join pool. A character-level pre-scan
+ * finds those elements without tokenizing anything else. The document with each of them cut down to an empty
+ * placeholder (name and namespace declarations only) is then parsed sequentially, which builds every ancestor
+ * exactly as {@link XmlNode.XmlNodeDeserializer} would. Finally, runs of sibling ranges are parsed concurrently,
+ * each straight into its placeholders, with the ancestors' namespace bindings declared on a wrapper element.
+ */
+final class ParallelXmlParser {
+    // Smallest batch worth a reader and a task of its own
+    static final int MIN_BATCH_CHARS = 1 << 16;
+
+    private final String xml;
+    private final int splitDepth;
+    private final int minBatchChars;
+    private final XMLInputFactory inputFactory;
+    private final JsonNodeFactory nodeFactory;
+    private final XmlNode.XmlNodeDeserializer deserializer;
+    // Ranges of the elements at splitDepth in document order, and the ordinal of the parent each belongs to
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] parents = new int[64];
+    private int count;
+    private XmlNode[] placeholders;
+    private final List<Map<String, String>> parentScopes = new ArrayList<>();
+
+    ParallelXmlParser(String xml, int splitDepth, int minBatchChars, XMLInputFactory inputFactory,
+                      JsonNodeFactory nodeFactory, XmlNode.XmlNodeDeserializer deserializer) {
+        this.xml = xml;
+        this.splitDepth = splitDepth;
+        this.minBatchChars = minBatchChars;
+        this.inputFactory = inputFactory;
+        this.nodeFactory = nodeFactory;
+        this.deserializer = deserializer;
+    }
+
+    /**
+     * @return the document, or null if it is better parsed sequentially: it is too small to make two batches, has
+     * a DOCTYPE (whose entities the workers would not know), fewer than two elements at the split depth, or a
+     * structure the pre-scan rejects
+     */
+    XmlNode parse(ForkJoinPool pool) throws XMLStreamException {
+        if (this.xml.length() < 2L * this.minBatchChars || !this.scan() || this.count < 2)
+            return null;
+        XmlNode root = this.parseSkeleton();
+        if (root == null)
+            return null;
+        List<int[]> batches = this.batches(pool.getParallelism());
+        try {
+            pool.invoke(new BatchAction(batches, 0, batches.size()));
+        } catch (ParseFailure e) {
+            throw e.getCause();
+        }
+        return root;
+    }
+
+    private boolean scan() {
+        String xml = this.xml;
+        int depth = 0;
+        int parent = -1;
+        int i = 0;
+        while ((i = xml.indexOf('<', i)) >= 0) {
+            if (xml.startsWith("<?", i))
+                i = skipPast(xml, "?>", i + 2);
+            else if (xml.startsWith("<!--", i))
+                i = skipPast(xml, "-->", i + 4);
+            else if (xml.startsWith("<![CDATA[", i))
+                i = skipPast(xml, "]]>", i + 9);
+            else if (xml.startsWith("<!", i))
+                return false;
+            else if (xml.startsWith("</", i)) {
+                int end = xml.indexOf('>', i + 2);
+                if (end < 0 || --depth < 0)
+                    return false;
+                i = end + 1;
+                if (depth == this.splitDepth)
+                    this.ends[this.count - 1] = i;
+            } else {
+                int end = tagEnd(xml, i + 1);
+                if (end < 0)
+                    return false;
+                boolean empty = xml.charAt(end - 1) == '/';
+                if (depth == this.splitDepth - 1)
+                    parent++;
+                else if (depth == this.splitDepth)
+                    this.add(i, empty ? end + 1 : -1, parent);
+                if (!empty)
+                    depth++;
+                i = end + 1;
+            }
+            if (i < 0)
+                return false;
+        }
+        return depth == 0;
+    }
+
+    private static int skipPast(String xml, String terminator, int from) {
+        int i = xml.indexOf(terminator, from);
+        return i < 0 ? -1 : i + terminator.length();
+    }
+
+    // Index of the '>' closing the tag whose name starts at from; '>' inside quoted attribute values is skipped
+    private static int tagEnd(String xml, int from) {
+        for (int i = from; i < xml.length(); i++) {
+            char c = xml.charAt(i);
+            if (c == '>')
+                return i;
+            if (c == '"' || c == '\'') {
+                i = xml.indexOf(c, i + 1);
+                if (i < 0)
+                    return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void add(int start, int end, int parent) {
+        if (this.count == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.count << 1);
+            this.ends = Arrays.copyOf(this.ends, this.count << 1);
+            this.parents = Arrays.copyOf(this.parents, this.count << 1);
+        }
+        this.starts[this.count] = start;
+        this.ends[this.count] = end;
+        this.parents[this.count++] = parent;
+    }
+
+    // The document with every split element reduced to <name xmlns...="..."/>
+    private String skeleton() {
+        long removed = 0;
+        for (int k = 0; k < this.count; k++)
+            removed += this.ends[k] - this.starts[k];
+        StringBuilder sb = new StringBuilder((int) (this.xml.length() - removed + this.count * 24L));
+        int last = 0;
+        for (int k = 0; k < this.count; k++) {
+            sb.append(this.xml, last, this.starts[k]);
+            this.appendPlaceholder(sb, this.starts[k]);
+            last = this.ends[k];
+        }
+        return sb.append(this.xml, last, this.xml.length()).toString();
+    }
+
+    private void appendPlaceholder(StringBuilder sb, int start) {
+        String xml = this.xml;
+        int i = start + 1;
+        while (!isTagDelimiter(xml.charAt(i)))
+            i++;
+        sb.append(xml, start, i);
+        while (true) {
+            while (xml.charAt(i) <= ' ')
+                i++;
+            if (xml.charAt(i) == '/' || xml.charAt(i) == '>')
+                break;
+            int nameStart = i;
+            while (xml.charAt(i) != '=' && xml.charAt(i) > ' ')
+                i++;
+            boolean declaration = xml.startsWith("xmlns", nameStart)
+                    && (i == nameStart + 5 || xml.charAt(nameStart + 5) == ':');
+            while (xml.charAt(i) != '"' && xml.charAt(i) != '\'')
+                i++;
+            i = xml.indexOf(xml.charAt(i), i + 1) + 1;
+            if (declaration)
+                sb.append(' ').append(xml, nameStart, i);
+        }
+        sb.append("/>");
+    }
+
+    private static boolean isTagDelimiter(char c) {
+        return c <= ' ' || c == '/' || c == '>';
+    }
+
+    // Builds the ancestors and collects the placeholders and each parent's namespace scope; null on a mismatch
+    // between the pre-scan and the parser, which only malformed documents produce
+    private XmlNode parseSkeleton() throws XMLStreamException {
+        XMLStreamReader reader = this.inputFactory.createXMLStreamReader(new StringReader(this.skeleton()));
+        try {
+            while (reader.next() != XMLStreamConstants.START_ELEMENT) ;
+            XmlNode root = new XmlNode(this.nodeFactory);
+            XmlNode.XmlNodeDeserializer.ElementBuilder builder = this.deserializer.new ElementBuilder(reader, root);
+            Deque<Map<String, String>> scopes = new ArrayDeque<>();
+            scopes.push(LazyChildNode.extendScope(Collections.emptyMap(), reader));
+            if (this.splitDepth == 1)
+                this.parentScopes.add(scopes.peek());
+            this.placeholders = new XmlNode[this.count];
+            int placeholder = 0;
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                boolean closed = builder.accept(reader, event);
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == this.splitDepth) {
+                        if (placeholder == this.count)
+                            return null;
+                        this.placeholders[placeholder++] = builder.current();
+                    }
+                    scopes.push(LazyChildNode.extendScope(scopes.peek(), reader));
+                    if (depth == this.splitDepth - 1)
+                        this.parentScopes.add(scopes.peek());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    scopes.pop();
+                    depth--;
+                }
+                if (closed)
+                    break;
+            }
+            return placeholder == this.count ? root : null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Runs of siblings of roughly equal size; a run never spans two parents
+    private List<int[]> batches(int parallelism) {
+        long total = 0;
+        for (int k = 0; k < this.count; k++)
+            total += this.ends[k] - this.starts[k];
+        long target = Math.max(this.minBatchChars, total / (parallelism * 4L));
+        List<int[]> batches = new ArrayList<>();
+        int from = 0;
+        long size = 0;
+        for (int k = 0; k < this.count; k++) {
+            if (k > from && (size >= target || this.parents[k] != this.parents[from])) {
+                batches.add(new int[]{from, k});
+                from = k;
+                size = 0;
+            }
+            size += this.ends[k] - this.starts[k];
+        }
+        batches.add(new int[]{from, this.count});
+        return batches;
+    }
+
+    private void parseBatch(int from, int to) throws XMLStreamException {
+        String header = LazyChildNode.scopeHeader(this.parentScopes.get(this.parents[from]));
+        XMLStreamReader reader = this.inputFactory.createXMLStreamReader(new LazyChildNode.RangeReader(header,
+                this.xml, this.starts[from], this.ends[to - 1], "</" + LazyChildNode.WRAPPER_NAME + ">"));
+        try {
+            reader.nextTag();
+            for (int k = from; k < to; ) {
+                // Text and comments between the siblings belong to the parent, which the skeleton already has
+                if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+                XmlNode node = this.placeholders[k++];
+                this.deserializer.readChildAttributes(reader, node);
+                XmlNode.XmlNodeDeserializer.ElementBuilder builder = this.deserializer.new ElementBuilder(node);
+                while (!builder.accept(reader, reader.next())) ;
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private final class BatchAction extends RecursiveAction {
+        private final List<int[]> batches;
+        private final int from;
+        private final int to;
+
+        private BatchAction(List<int[]> batches, int from, int to) {
+            this.batches = batches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new BatchAction(this.batches, this.from, middle), new BatchAction(this.batches, middle, this.to));
+                return;
+            }
+            int[] batch = this.batches.get(this.from);
+            try {
+                ParallelXmlParser.this.parseBatch(batch[0], batch[1]);
+            } catch (XMLStreamException e) {
+                throw new ParseFailure(e);
+            }
+        }
+    }
+
+    private static final class ParseFailure extends RuntimeException {
+        private ParseFailure(XMLStreamException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized XMLStreamException getCause() {
+            return (XMLStreamException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.xmlnode;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Collects one run of adjacent text and CDATA events so that it becomes a single value. Characters are copied
+ * straight from the reader's buffer, and whitespace in front of any content (indentation, mostly) is never copied,
+ * so pure formatting allocates nothing. A run that contains a CDATA section becomes a {@link CDATANode}, unless
+ * its content contains {@code ]]>} and can only be written as escaped text.
+ */
+final class TextBuffer {
+    private static final char[] EMPTY = new char[0];
+
+    private char[] chars = EMPTY;
+    private int length;
+    private boolean cdata;
+
+    void append(XMLStreamReader reader) {
+        char[] source = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        int end = start + reader.getTextLength();
+        if (this.length == 0) {
+            // Leading whitespace is trimmed from the value anyway
+            while (start < end && source[start] <= ' ')
+                start++;
+            if (start == end)
+                return;
+        }
+        int count = end - start;
+        if (this.length + count > this.chars.length) {
+            char[] grown = new char[Math.max(this.length + count, Math.max(32, this.chars.length << 1))];
+            System.arraycopy(this.chars, 0, grown, 0, this.length);
+            this.chars = grown;
+        }
+        System.arraycopy(source, start, this.chars, this.length, count);
+        this.length += count;
+        if (reader.getEventType() == XMLStreamConstants.CDATA)
+            this.cdata = true;
+    }
+
+    // Ends the current run: adds its trimmed value to node (if there is one) and empties the buffer for the next run.
+    void flush(XmlNode node, XmlSymbolTable symbols) {
+        int end = this.length;
+        while (end > 0 && this.chars[end - 1] <= ' ')
+            end--;
+        if (end > 0) {
+            // A CDATA section cannot hold "]]>", which documents spell by splitting it across two sections
+            if (this.cdata && !this.containsSectionEnd(end))
+                node.setValue(CDATANode.ofContent(new String(this.chars, 0, end)));
+            else
+                node.setValue(symbols.textValue(this.chars, 0, end));
+        }
+        this.length = 0;
+        this.cdata = false;
+    }
+
+    private boolean containsSectionEnd(int end) {
+        for (int i = 2; i < end; i++) {
+            if (this.chars[i] == '>' && this.chars[i - 1] == ']' && this.chars[i - 2] == ']')
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,19 +1,21 @@
 package com.github.xmlnode;
 
+import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.POJONode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.fasterxml.jackson.databind.util.RawValue;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.xml.deser.FromXmlParser;
 import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
 
@@ -21,28 +23,61 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class XmlNode extends ObjectNode {
-    protected List<ChildNode> _children = new ArrayList<>();
-    protected final Map<String, Object> _attributes = new LinkedHashMap<>();
-    protected final Map<String, String> _namespacePrefixURIMapping = new HashMap<>();
-    protected final Map<String, List<String>> _namespacePrefixElementMapping = new HashMap<>();
-    protected final Map<String, String> _prefixAttributeMapping = new HashMap<>();
+    // ObjectNode's own property map is never used by XmlNode; share one empty map instead of allocating it per node.
+    private static final Map<String, JsonNode> NO_PROPERTIES = Collections.emptyMap();
+    private static final int INITIAL_CHILD_CAPACITY = 4;
+    // Name summary of a subtree whose names are unknown, so that searches always enter it
+    private static final long ANY_NAME = -1L;
+    // The modes of find()
+    private static final int FIND_VALUE = 0;
+    private static final int FIND_PARENT = 1;
+    private static final int FIND_VALUES = 2;
+    private static final int FIND_VALUES_AS_TEXT = 3;
+    private static final int FIND_PARENTS = 4;
+    // Nodes with more children than this get a name index, on the first lookup or up front when frozen; smaller
+    // ones are scanned, which is as fast and leaves nothing behind
+    static final int INDEX_MIN_CHILDREN = 8;
+
+    // All of these start out as shared immutable empty instances and are only allocated on the first write, since
+    // most nodes in a document are leaves without attributes or namespace declarations.
+    protected List<ChildNode> _children = Collections.emptyList();
+    protected Map<String, Object> _attributes = Collections.emptyMap();
+    protected Map<String, String> _namespacePrefixURIMapping = Collections.emptyMap();
+    // Element name -> prefix and attribute name -> prefix, kept up to date on insert so that serialization resolves
+    // each qualified name with a single lookup. Unprefixed names are never recorded.
+    protected Map<String, String> _elementPrefixMapping = Collections.emptyMap();
+    protected Map<String, String> _attributePrefixMapping = Collections.emptyMap();
+    // Element name -> children with that name in document order. Built on the first name lookup once the node has
+    // more than INDEX_MIN_CHILDREN children and kept in sync by every structural mutation from then on; null means
+    // "not built yet".
+    private Map<String, List<ChildNode>> _childIndex;
+    // Set by freeze(): every collection above is unmodifiable and the mutators throw
+    private boolean _frozen;
+    // Set by copyOnWrite(): the collections above, and the XmlNode children, still belong to the source node until
+    // the first write or child lookup, see own()
+    private boolean _shared;
+    // Set while the node waits in an XmlNodePool, and while the pool walks a tree that it recycles
+    boolean _pooled;
+    // Bloom filter of the names of all descendants, see nameSummary(); valid while _summaryScope is
+    private long _nameSummary;
+    private SummaryScope _summaryScope;
 
     public XmlNode(JsonNodeFactory nc, Map<String, JsonNode> children) {
-        super(nc);
-        this._children = children.entrySet()
-                .stream()
-                .map(kv -> new ChildNode(kv.getKey(), kv.getValue()))
-                .collect(Collectors.toList());
+        super(nc, NO_PROPERTIES);
+        this._children = new ArrayList<>(children.size());
+        for (Map.Entry<String, JsonNode> kv : children.entrySet())
+            this._children.add(new ChildNode(kv.getKey(), kv.getValue()));
     }
 
     public XmlNode(JsonNodeFactory nc) {
-        super(nc);
+        super(nc, NO_PROPERTIES);
     }
 
     @Override
@@ -65,6 +100,24 @@ public class XmlNode extends ObjectNode {
         return n;
     }
 
+    @Override
+    public ArrayNode putArray(String propertyName) {
+        throw unsupportedArray(propertyName);
+    }
+
+    // XML has no arrays, and the writers would emit malformed markup for one
+    private static UnsupportedOperationException unsupportedArray(String propertyName) {
+        return new UnsupportedOperationException(String.format(
+                "XmlNode cannot hold the JSON array '%s'; add repeated elements with putObject or set instead", propertyName));
+    }
+
+    // A plain JSON object or array child has no element name of its own to be written under
+    static JsonGenerationException unsupportedContainer(String propertyName, JsonNode node, JsonGenerator g) {
+        return new JsonGenerationException(String.format(
+                "XmlNode cannot write the JSON %s '%s'; use XmlNode children instead",
+                node.isArray() ? "array" : "object", propertyName), g);
+    }
+
     @Override
     public XmlNode putPOJO(String fieldName, Object pojo) {
         JsonNode n = this.pojoNode(pojo);
@@ -74,137 +127,102 @@ public class XmlNode extends ObjectNode {
 
     @Override
     public XmlNode putRawValue(String fieldName, RawValue raw) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.rawValueNode(raw));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.rawValueNode(raw));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, short v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, int v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, long v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, float v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, double v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, BigDecimal v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, BigInteger v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.numberNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.numberNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, String v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.textNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.textNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, boolean v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.booleanNode(v));
-        this.addChild(fieldName, n);
-        return n;
+        return this.putValue(fieldName, this.booleanNode(v));
     }
 
     @Override
     public XmlNode put(String fieldName, byte[] v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(this.binaryNode(v));
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, this.binaryNode(v));
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Short v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.numberNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.numberNode(v) : this.nullNode());
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Integer v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.numberNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.numberNode(v) : this.nullNode());
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Long v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.numberNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.numberNode(v) : this.nullNode());
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Float v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.numberNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.numberNode(v) : this.nullNode());
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Double v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.numberNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.numberNode(v) : this.nullNode());
         return this;
     }
 
     @Override
     public XmlNode put(String fieldName, Boolean v) {
-        XmlNode n = new XmlNode(this._nodeFactory);
-        n.setValue(v != null ? this.booleanNode(v) : this.nullNode());
-        this.addChild(fieldName, n);
+        this.putValue(fieldName, v != null ? this.booleanNode(v) : this.nullNode());
         return this;
     }
 
@@ -212,26 +230,287 @@ public class XmlNode extends ObjectNode {
     public JsonNode get(int index) {
         if (index < 0 || index >= this._children.size())
             return null;
-        return this._children.get(index).getNode();
+        return this.childList().get(index).getNode();
     }
 
     @Override
     public JsonNode get(String propertyName) {
-        return this._children.stream()
-                .filter(node -> node.getAttributeName().equals(propertyName))
-                .map(ChildNode::getNode)
-                .findFirst()
-                .orElse(null);
+        ChildNode match = this.first(propertyName);
+        return match == null ? null : match.getNode();
+    }
+
+    public List<JsonNode> getAll(String propertyName) {
+        List<ChildNode> matches = this.named(propertyName);
+        if (matches == null)
+            return Collections.emptyList();
+        List<JsonNode> nodes = new ArrayList<>(matches.size());
+        for (ChildNode match : matches)
+            nodes.add(match.getNode());
+        return nodes;
     }
 
     @Override
     public XmlNode deepCopy() {
-        XmlNode ret = new XmlNode(_nodeFactory);
+        XmlNode ret = new XmlNode(this._nodeFactory);
+        ret.copyHead(this);
+        for (ChildNode entry : this._children)
+            ret.addChild(new ChildNode(entry.getAttributeName(), entry.getNode().deepCopy(), entry.isValueNode()));
+        return ret;
+    }
+
+    /**
+     * Returns a copy in constant time that shares this node's children, attributes and namespaces until it is
+     * changed. A node of the copy takes private copies of its own collections the first time it is written to or
+     * hands out a child (through {@code get}, {@code getAll}, iteration, {@code find...} or {@link XmlPath}), its
+     * XmlNode children becoming copy-on-write copies in turn. Editing a few elements of a large template therefore
+     * copies only the nodes on the paths to them, and writing the copy out copies nothing.
+     * <p>
+     * The source must not be modified while copies of it are in use. A {@link #freeze() frozen} source guarantees
+     * that and can be copied from any number of threads at once.
+     */
+    public XmlNode copyOnWrite() {
+        XmlNode copy = new XmlNode(this._nodeFactory);
+        copy._children = this._children;
+        copy._attributes = this._attributes;
+        copy._namespacePrefixURIMapping = this._namespacePrefixURIMapping;
+        copy._elementPrefixMapping = this._elementPrefixMapping;
+        copy._attributePrefixMapping = this._attributePrefixMapping;
+        copy._shared = true;
+        return copy;
+    }
+
+    // Replaces the collections shared with the source of copyOnWrite() by private, mutable copies
+    private void own() {
+        this._shared = false;
+        List<ChildNode> children = this._children;
+        // The copies have the names of the nodes they replace, so a valid summary here stays valid
+        SummaryScope scope = this.hasNameSummary() ? this._summaryScope : null;
+        if (children.size() == 1 && children.get(0).isValueNode()) {
+            this._children = Collections.singletonList(ownChild(children.get(0), scope));
+        } else if (!children.isEmpty()) {
+            this._children = new ArrayList<>(Math.max(INITIAL_CHILD_CAPACITY, children.size()));
+            for (ChildNode child : children)
+                this._children.add(ownChild(child, scope));
+        }
+        this._childIndex = null;
+        this.copyHead(this);
+    }
+
+    // ChildNode is mutable (replace() swaps its node), so value children get a fresh holder as well
+    private static ChildNode ownChild(ChildNode child, SummaryScope scope) {
+        JsonNode node = child.getNode();
+        if (node instanceof XmlNode) {
+            XmlNode source = (XmlNode) node;
+            XmlNode copy = source.copyOnWrite();
+            if (scope != null && source.hasNameSummary()) {
+                copy._nameSummary = source._nameSummary;
+                copy._summaryScope = scope;
+            }
+            node = copy;
+        } else if (node.isContainerNode())
+            node = node.deepCopy();
+        return new ChildNode(child.getAttributeName(), node, child.isValueNode());
+    }
+
+    // Mutable copies of the attributes, namespaces and prefixes of source
+    private void copyHead(XmlNode source) {
+        this._attributes = mutableMap(source._attributes);
+        this._namespacePrefixURIMapping = mutableMap(source._namespacePrefixURIMapping);
+        this._elementPrefixMapping = mutableMap(source._elementPrefixMapping);
+        this._attributePrefixMapping = mutableMap(source._attributePrefixMapping);
+    }
+
+    private static <V> Map<String, V> mutableMap(Map<String, V> map) {
+        return map.isEmpty() ? Collections.emptyMap() : new CompactMap<>(map);
+    }
+
+    /**
+     * Returns an immutable snapshot of this tree. Child lists and maps are trimmed and wrapped read-only, nodes with
+     * more than a handful of children get their name index up front, lazily parsed children are parsed, and every
+     * mutator of the snapshot throws {@link UnsupportedOperationException}. Since reads never
+     * write to it, a snapshot can be read from any number of threads once safely published (e.g. through a final or
+     * volatile field). Frozen subtrees are shared rather than copied; JSON containers other than XmlNode are copied
+     * but stay mutable. The snapshot serializes exactly like this node.
+     */
+    public XmlNode freeze() {
+        if (this._frozen)
+            return this;
+        XmlNode root = this.frozenHead();
+        Deque<XmlNode[]> pending = new ArrayDeque<>();
+        pending.push(new XmlNode[]{this, root});
+        while (!pending.isEmpty()) {
+            XmlNode[] pair = pending.pop();
+            XmlNode source = pair[0];
+            XmlNode copy = pair[1];
+            ChildNode[] children = new ChildNode[source._children.size()];
+            for (int i = 0; i < children.length; i++) {
+                ChildNode child = source._children.get(i);
+                JsonNode node = child.getNode();
+                if (node instanceof XmlNode && !((XmlNode) node)._frozen) {
+                    XmlNode head = ((XmlNode) node).frozenHead();
+                    pending.push(new XmlNode[]{(XmlNode) node, head});
+                    node = head;
+                } else if (node.isContainerNode() && !(node instanceof XmlNode)) {
+                    node = node.deepCopy();
+                }
+                children[i] = new ChildNode(child.getAttributeName(), node, child.isValueNode());
+            }
+            copy._children = children.length == 0 ? Collections.emptyList()
+                    : children.length == 1 ? Collections.singletonList(children[0])
+                    : Collections.unmodifiableList(Arrays.asList(children));
+            if (children.length > INDEX_MIN_CHILDREN) {
+                Map<String, List<ChildNode>> index = new HashMap<>();
+                for (ChildNode child : children)
+                    index.computeIfAbsent(child.getAttributeName(), k -> new ArrayList<>(1)).add(child);
+                for (Map.Entry<String, List<ChildNode>> entry : index.entrySet())
+                    entry.setValue(Collections.unmodifiableList(entry.getValue()));
+                copy._childIndex = Collections.unmodifiableMap(index);
+            }
+            copy._frozen = true;
+        }
+        // Computed up front, since reads must not write to a snapshot
+        root.nameSummary();
+        return root;
+    }
+
+    // A copy of the attributes, namespaces and prefixes, read-only and sized to fit
+    private XmlNode frozenHead() {
+        XmlNode copy = new XmlNode(this._nodeFactory);
+        copy._attributes = frozenMap(this._attributes);
+        copy._namespacePrefixURIMapping = frozenMap(this._namespacePrefixURIMapping);
+        copy._elementPrefixMapping = frozenMap(this._elementPrefixMapping);
+        copy._attributePrefixMapping = frozenMap(this._attributePrefixMapping);
+        return copy;
+    }
+
+    private static <V> Map<String, V> frozenMap(Map<String, V> map) {
+        return map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new CompactMap<>(map));
+    }
+
+    public boolean isFrozen() {
+        return this._frozen;
+    }
+
+    /**
+     * Returns this node to the state of a new node, without children, attributes or namespace declarations. Unlike
+     * {@link #removeAll()}, the child list and maps already allocated are emptied and kept, so refilling the node
+     * allocates nothing until it outgrows them. Former children are detached but not reset themselves; see
+     * {@link XmlNodePool#release(XmlNode)} to recycle a whole tree.
+     */
+    public XmlNode reset() {
+        if (this._frozen)
+            throw new UnsupportedOperationException("XmlNode is frozen");
+        this.invalidateNameSummary();
+        if (this._shared) {
+            // Everything here still belongs to the copyOnWrite() source
+            this._shared = false;
+            this._children = Collections.emptyList();
+            this._attributes = Collections.emptyMap();
+            this._namespacePrefixURIMapping = Collections.emptyMap();
+            this._elementPrefixMapping = Collections.emptyMap();
+            this._attributePrefixMapping = Collections.emptyMap();
+            this._childIndex = null;
+            return this;
+        }
+        if (this._children instanceof ArrayList)
+            this._children.clear();
+        else
+            this._children = Collections.emptyList();
+        this._attributes.clear();
+        this._namespacePrefixURIMapping.clear();
+        this._elementPrefixMapping.clear();
+        this._attributePrefixMapping.clear();
+        if (this._childIndex != null)
+            this._childIndex.clear();
+        return this;
+    }
 
-        for (ChildNode entry : _children)
-            ret.addChild(entry.getAttributeName(), entry.getNode().deepCopy());
+    private void beforeWrite() {
+        if (this._frozen)
+            throw new UnsupportedOperationException("XmlNode is frozen");
+        if (this._shared)
+            this.own();
+    }
 
-        return ret;
+    // Before any change to the children, which the name summaries depend on
+    private void beforeChildWrite() {
+        this.beforeWrite();
+        this.invalidateNameSummary();
+    }
+
+    private void invalidateNameSummary() {
+        if (this._summaryScope != null) {
+            this._summaryScope.resolve().valid = false;
+            this._summaryScope = null;
+        }
+    }
+
+    private boolean hasNameSummary() {
+        return this._summaryScope != null && this._summaryScope.resolve().valid;
+    }
+
+    /**
+     * Returns a 64-bit Bloom filter of the names of all descendants of this node, computed on first use without
+     * recursion and cached. Names under unparsed lazy children or JSON containers other than XmlNode are unknown and
+     * set every bit. Nodes have no parent link, so every node summarized in one pass is tagged with a shared
+     * {@link SummaryScope}: a write to any of them invalidates the summaries of the whole pass, and a pass reusing
+     * the valid summary of an earlier one merges the two scopes. Snapshots are summarized by freeze() and never
+     * invalidated.
+     */
+    long nameSummary() {
+        if (this.hasNameSummary())
+            return this._nameSummary;
+        SummaryScope scope = new SummaryScope();
+        XmlNode[] nodes = new XmlNode[16];
+        int[] positions = new int[16];
+        long[] summaries = new long[16];
+        int depth = 0;
+        nodes[0] = this;
+        while (true) {
+            XmlNode node = nodes[depth];
+            // Read without owning: a copy has the names of the nodes it shares
+            List<ChildNode> children = node._children;
+            if (positions[depth] == children.size()) {
+                node._nameSummary = summaries[depth];
+                node._summaryScope = node._frozen ? SummaryScope.FROZEN : scope;
+                nodes[depth] = null;
+                if (depth == 0)
+                    return node._nameSummary;
+                summaries[--depth] |= node._nameSummary;
+                continue;
+            }
+            ChildNode child = children.get(positions[depth]++);
+            summaries[depth] |= nameBits(child.getAttributeName());
+            if (child instanceof LazyChildNode && !((LazyChildNode) child).isMaterialized()) {
+                summaries[depth] = ANY_NAME;
+                continue;
+            }
+            JsonNode value = child.getNode();
+            if (value instanceof XmlNode) {
+                XmlNode element = (XmlNode) value;
+                if (element.hasNameSummary()) {
+                    summaries[depth] |= element._nameSummary;
+                    scope.merge(element._summaryScope.resolve());
+                    continue;
+                }
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth << 1);
+                    positions = Arrays.copyOf(positions, depth << 1);
+                    summaries = Arrays.copyOf(summaries, depth << 1);
+                }
+                nodes[depth] = element;
+                positions[depth] = 0;
+                summaries[depth] = 0;
+            } else if (value.isContainerNode()) {
+                summaries[depth] = ANY_NAME;
+            }
+        }
+    }
+
+    // Two bits of a 64-bit Bloom filter, taken from the top and bottom of the spread hash
+    private static long nameBits(String name) {
+        int hash = name.hashCode() * 0x9E3779B9;
+        return 1L << hash | 1L << (hash >>> 26);
     }
 
     @Override
@@ -246,12 +525,22 @@ public class XmlNode extends ObjectNode {
 
     @Override
     public Iterator<JsonNode> elements() {
-        return this._children.stream().map(ChildNode::getNode).iterator();
+        return new ChildIterator<JsonNode>(this.childList()) {
+            @Override
+            JsonNode value(ChildNode child) {
+                return child.getNode();
+            }
+        };
     }
 
     @Override
     public Iterator<String> fieldNames() {
-        return this._children.stream().map(ChildNode::getAttributeName).iterator();
+        return new ChildIterator<String>(this._children) {
+            @Override
+            String value(ChildNode child) {
+                return child.getAttributeName();
+            }
+        };
     }
 
     @Override
@@ -283,12 +572,14 @@ public class XmlNode extends ObjectNode {
 
     @Override
     public JsonNode replace(String propertyName, JsonNode value) {
-        for (ChildNode childNode : this._children) {
-            if (childNode.getAttributeName().equals(propertyName)) {
-                JsonNode node = childNode.getNode();
-                childNode.setNode(value);
-                return node;
-            }
+        if (value instanceof ArrayNode)
+            throw unsupportedArray(propertyName);
+        this.beforeChildWrite();
+        ChildNode childNode = this.first(propertyName);
+        if (childNode != null) {
+            JsonNode node = childNode.getNode();
+            childNode.setNode(value);
+            return node;
         }
         this.addChild(propertyName, value);
         return null;
@@ -296,13 +587,17 @@ public class XmlNode extends ObjectNode {
 
     @Override
     public <T extends JsonNode> T without(String propertyName) {
-        this._children.removeIf(node -> node.getAttributeName().equals(propertyName));
+        this.beforeChildWrite();
+        if (this._childIndex == null || this._childIndex.remove(propertyName) != null)
+            this.writableChildren().removeIf(node -> node.getAttributeName().equals(propertyName));
         return (T) this;
     }
 
     @Override
     public <T extends JsonNode> T without(Collection<String> propertyNames) {
-        this._children.removeIf(node -> propertyNames.contains(node.getAttributeName()));
+        this.writableChildren().removeIf(node -> propertyNames.contains(node.getAttributeName()));
+        if (this._childIndex != null)
+            this._childIndex.keySet().removeAll(propertyNames);
         return (T) this;
     }
 
@@ -314,23 +609,19 @@ public class XmlNode extends ObjectNode {
     }
 
     public JsonNode remove(int index) {
-        JsonNode toRemove = this.get(index);
-        int i = 0;
-        for (Iterator<ChildNode> iterator = this._children.iterator(); iterator.hasNext(); i++) {
-            iterator.next();
-            if (index == i)
-                iterator.remove();
-        }
-        return toRemove;
+        if (index < 0 || index >= this._children.size())
+            return null;
+        ChildNode removed = this.writableChildren().remove(index);
+        this.unindex(removed);
+        return removed.getNode();
     }
 
     @Override
     public JsonNode putIfAbsent(String propertyName, JsonNode value) {
-        if (this.get(propertyName) == null) {
+        JsonNode existing = this.get(propertyName);
+        if (existing == null)
             this.set(propertyName, value);
-            return null;
-        }
-        return this.get(propertyName);
+        return existing;
     }
 
     @Override
@@ -341,13 +632,17 @@ public class XmlNode extends ObjectNode {
 
     @Override
     public XmlNode removeAll() {
-        this._children.clear();
+        this.beforeChildWrite();
+        this._children = Collections.emptyList();
+        this._childIndex = null;
         return this;
     }
 
     @Override
     public XmlNode retain(Collection<String> propertyNames) {
-        this._children.removeIf(node -> !propertyNames.contains(node.getAttributeName()));
+        this.writableChildren().removeIf(node -> !propertyNames.contains(node.getAttributeName()));
+        if (this._childIndex != null)
+            this._childIndex.keySet().retainAll(propertyNames);
         return this;
     }
 
@@ -362,14 +657,31 @@ public class XmlNode extends ObjectNode {
         return this;
     }
 
+    public static XmlNode parse(String xml) throws JsonProcessingException {
+        return XmlNodeCodec.getDefault().read(xml);
+    }
+
+    public static XmlNode parse(InputStream xml) throws IOException {
+        return XmlNodeCodec.getDefault().read(xml);
+    }
+
+    public static XmlNode parseLazy(String xml) throws IOException {
+        return XmlNodeCodec.getDefault().readLazy(xml);
+    }
+
+    // Only the root name changes, so derive a writer instead of a whole codec (reader and StAX writer included)
+    public static String write(XmlNode node, String rootName) throws JsonProcessingException {
+        return XmlNodeCodec.getDefault().getWriter().withRootName(rootName).writeValueAsString(node);
+    }
+
+    public static void write(XmlNode node, String rootName, OutputStream out) throws IOException {
+        XmlNodeCodec.getDefault().getWriter().withRootName(rootName).writeValue(out, node);
+    }
+
     @Override
     public String toPrettyString() {
         try {
-            return XmlMapper.xmlBuilder()
-                    .findAndAddModules()
-                    .build()
-                    .writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(this);
+            return XmlNodeCodec.DEFAULT_PRETTY.write(this);
         } catch (JsonProcessingException e) {
             return super.toPrettyString();
         }
@@ -378,7 +690,7 @@ public class XmlNode extends ObjectNode {
     @Override
     public String toString() {
         try {
-            return XmlMapper.xmlBuilder().findAndAddModules().build().writeValueAsString(this);
+            return XmlNodeCodec.getDefault().write(this);
         } catch (JsonProcessingException e) {
             return super.toString();
         }
@@ -406,36 +718,132 @@ public class XmlNode extends ObjectNode {
         return n != null && !n.isNull();
     }
 
+    /**
+     * @return a read-only view with one entry per child in document order, so that repeated element names each have
+     * their own entry; changes to this node show through
+     */
     @Override
     public Set<Map.Entry<String, JsonNode>> properties() {
-        return this._children.stream()
-                .collect(Collectors.toMap(ChildNode::getAttributeName, ChildNode::getNode))
-                .entrySet();
+        return new AbstractSet<Map.Entry<String, JsonNode>>() {
+            @Override
+            public Iterator<Map.Entry<String, JsonNode>> iterator() {
+                return new ChildIterator<Map.Entry<String, JsonNode>>(XmlNode.this.childList()) {
+                    @Override
+                    Map.Entry<String, JsonNode> value(ChildNode child) {
+                        return new AbstractMap.SimpleImmutableEntry<>(child.getAttributeName(), child.getNode());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return XmlNode.this._children.size();
+            }
+        };
     }
 
     @Override
     public JsonNode findValue(String propertyName) {
-        JsonNode jsonNode = this.get(propertyName);
-        if (jsonNode != null)
-            return jsonNode;
-
-        return this._children.stream()
-                .map(child -> child.getNode().findValue(propertyName))
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+        return (JsonNode) this.find(propertyName, FIND_VALUE, null);
     }
 
     @Override
     public ObjectNode findParent(String propertyName) {
-        JsonNode jsonNode = this.get(propertyName);
-        if (jsonNode != null)
-            return this;
-        return (ObjectNode) this._children.stream()
-                .map(child -> child.getNode().findParent(propertyName))
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+        return (ObjectNode) this.find(propertyName, FIND_PARENT, null);
+    }
+
+    @Override
+    public List<JsonNode> findValues(String propertyName, List<JsonNode> foundSoFar) {
+        return (List<JsonNode>) this.find(propertyName, FIND_VALUES, foundSoFar);
+    }
+
+    @Override
+    public List<String> findValuesAsText(String propertyName, List<String> foundSoFar) {
+        return (List<String>) this.find(propertyName, FIND_VALUES_AS_TEXT, foundSoFar);
+    }
+
+    @Override
+    public List<JsonNode> findParents(String propertyName, List<JsonNode> foundSoFar) {
+        return (List<JsonNode>) this.find(propertyName, FIND_PARENTS, foundSoFar);
+    }
+
+    /**
+     * Depth-first search in document order, with its own stack, that skips every subtree whose name summary rules
+     * propertyName out. FIND_VALUE and FIND_PARENT return the first hit, where each node looks at its own children
+     * before their subtrees. The other modes add to found, created when needed, and return it; like ObjectNode they
+     * do not search below a match.
+     */
+    private Object find(String propertyName, int mode, List found) {
+        boolean first = mode == FIND_VALUE || mode == FIND_PARENT;
+        if (first) {
+            JsonNode hit = this.get(propertyName);
+            if (hit != null)
+                return mode == FIND_VALUE ? hit : this;
+        }
+        long bits = nameBits(propertyName);
+        if ((this.nameSummary() & bits) != bits)
+            return first ? null : found;
+        XmlNode[] nodes = new XmlNode[16];
+        int[] positions = new int[16];
+        // Whether the node has been added by FIND_PARENTS
+        boolean[] added = new boolean[16];
+        int depth = 0;
+        nodes[0] = this;
+        while (true) {
+            XmlNode node = nodes[depth];
+            List<ChildNode> children = node.childList();
+            if (positions[depth] == children.size()) {
+                nodes[depth] = null;
+                if (depth-- == 0)
+                    return first ? null : found;
+                continue;
+            }
+            ChildNode child = children.get(positions[depth]++);
+            JsonNode value = child.getNode();
+            if (!first && child.getAttributeName().equals(propertyName)) {
+                if (found == null)
+                    found = new ArrayList<>();
+                if (mode == FIND_VALUES)
+                    found.add(value);
+                else if (mode == FIND_VALUES_AS_TEXT)
+                    found.add(value.asText());
+                else if (!added[depth]) {
+                    added[depth] = true;
+                    found.add(node);
+                }
+                continue;
+            }
+            if (value instanceof XmlNode) {
+                XmlNode element = (XmlNode) value;
+                if ((element.nameSummary() & bits) != bits)
+                    continue;
+                if (first) {
+                    JsonNode hit = element.get(propertyName);
+                    if (hit != null)
+                        return mode == FIND_VALUE ? hit : element;
+                }
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth << 1);
+                    positions = Arrays.copyOf(positions, depth << 1);
+                    added = Arrays.copyOf(added, depth << 1);
+                }
+                nodes[depth] = element;
+                positions[depth] = 0;
+                added[depth] = false;
+            } else if (value.isContainerNode()) {
+                if (mode == FIND_VALUE || mode == FIND_PARENT) {
+                    JsonNode hit = mode == FIND_VALUE ? value.findValue(propertyName) : value.findParent(propertyName);
+                    if (hit != null)
+                        return hit;
+                } else if (mode == FIND_VALUES) {
+                    found = value.findValues(propertyName, found);
+                } else if (mode == FIND_VALUES_AS_TEXT) {
+                    found = value.findValuesAsText(propertyName, found);
+                } else {
+                    found = value.findParents(propertyName, found);
+                }
+            }
+        }
     }
 
     @Override
@@ -456,6 +864,61 @@ public class XmlNode extends ObjectNode {
         return (T) this;
     }
 
+    // ObjectNode's versions of the methods below use its own property map, which XmlNode leaves empty and immutable
+
+    @Override
+    public JsonNode put(String propertyName, JsonNode value) {
+        return this.replace(propertyName, value == null ? this.nullNode() : value);
+    }
+
+    @Override
+    public JsonNode putAll(Map<String, ? extends JsonNode> properties) {
+        return this.setAll(properties);
+    }
+
+    @Override
+    public JsonNode putAll(ObjectNode other) {
+        return this.setAll(other);
+    }
+
+    @Override
+    public ObjectNode with(String exprOrProperty) {
+        JsonPointer pointer = this._jsonPointerIfValid(exprOrProperty);
+        return pointer != null ? this.withObject(pointer) : this.withObjectProperty(exprOrProperty);
+    }
+
+    @Override
+    public ObjectNode withObjectProperty(String propertyName) {
+        JsonNode child = this.get(propertyName);
+        if (child == null || child.isNull())
+            return this.putObject(propertyName);
+        if (child instanceof ObjectNode)
+            return (ObjectNode) child;
+        throw new UnsupportedOperationException(String.format(
+                "Property '%s' has value that is not of type ObjectNode (but %s)", propertyName, child.getClass().getName()));
+    }
+
+    @Override
+    public ArrayNode withArray(String exprOrProperty) {
+        JsonPointer pointer = this._jsonPointerIfValid(exprOrProperty);
+        if (pointer != null)
+            return this.withArray(pointer);
+        throw unsupportedArray(exprOrProperty);
+    }
+
+    @Override
+    public ArrayNode withArrayProperty(String propertyName) {
+        throw unsupportedArray(propertyName);
+    }
+
+    @Override
+    public JsonNode required(String propertyName) {
+        JsonNode child = this.get(propertyName);
+        if (child == null)
+            return this._reportRequiredViolation("No value for property '%s' of `XmlNode`", propertyName);
+        return child;
+    }
+
     @Override
     public <T extends JsonNode> T require() throws IllegalArgumentException {
         return (T) this;
@@ -468,13 +931,19 @@ public class XmlNode extends ObjectNode {
 
 
     public XmlNode putAttribute(String attributeName, Object v) {
-        this._attributes.put(attributeName, v);
+        this.writableAttributes().put(attributeName, v);
         return this;
     }
 
     public XmlNode putAttribute(String prefix, String attributeName, Object v) {
-        this._attributes.put(attributeName, v);
-        this._prefixAttributeMapping.put(prefix, attributeName);
+        this.writableAttributes().put(attributeName, v);
+        if (prefix == null || prefix.trim().isEmpty()) {
+            this._attributePrefixMapping.remove(attributeName);
+            return this;
+        }
+        if (this._attributePrefixMapping == Collections.<String, String>emptyMap())
+            this._attributePrefixMapping = new CompactMap<>();
+        this._attributePrefixMapping.put(attributeName, prefix);
         return this;
     }
 
@@ -483,28 +952,164 @@ public class XmlNode extends ObjectNode {
     }
 
     private void addChild(String propertyName, JsonNode value) {
-        this._children.add(new ChildNode(propertyName, value));
+        if (value instanceof ArrayNode)
+            throw unsupportedArray(propertyName);
+        this.addChild(new ChildNode(propertyName, value));
+    }
+
+    void addChild(ChildNode child) {
+        this.beforeChildWrite();
+        if (this._children.isEmpty() && child.isValueNode())
+            // Text-only element: a singleton list instead of ArrayList + backing array until a second child arrives
+            this._children = Collections.singletonList(child);
+        else
+            this.writableChildren().add(child);
+        if (this._childIndex != null)
+            this._childIndex.computeIfAbsent(child.getAttributeName(), k -> new ArrayList<>(1)).add(child);
+    }
+
+    private void unindex(ChildNode child) {
+        if (this._childIndex == null)
+            return;
+        List<ChildNode> matches = this._childIndex.get(child.getAttributeName());
+        if (matches != null && matches.remove(child) && matches.isEmpty())
+            this._childIndex.remove(child.getAttributeName());
+    }
+
+    // The first child with the given name, or null if there is none
+    private ChildNode first(String propertyName) {
+        if (this._shared)
+            this.own();
+        if (this._childIndex == null && !this.needsIndex()) {
+            List<ChildNode> children = this._children;
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i).getAttributeName().equals(propertyName))
+                    return children.get(i);
+            }
+            return null;
+        }
+        List<ChildNode> matches = this.childIndex().get(propertyName);
+        return matches == null ? null : matches.get(0);
+    }
+
+    // Children with the given name in document order, or null if there are none
+    private List<ChildNode> named(String propertyName) {
+        if (this._shared)
+            this.own();
+        if (this._childIndex == null && !this.needsIndex()) {
+            List<ChildNode> matches = null;
+            for (ChildNode child : this._children) {
+                if (child.getAttributeName().equals(propertyName)) {
+                    if (matches == null)
+                        matches = new ArrayList<>(1);
+                    matches.add(child);
+                }
+            }
+            return matches;
+        }
+        return this.childIndex().get(propertyName);
+    }
+
+    // Frozen nodes are indexed up front if at all, since building the index later would race with other readers
+    private boolean needsIndex() {
+        return !this._frozen && this._children.size() > INDEX_MIN_CHILDREN;
     }
 
-    private List<String> addNamespace(String prefix, String elementName) {
-        List<String> tempList;
-        if (this._namespacePrefixElementMapping.containsKey(prefix)) {
-            tempList = this._namespacePrefixElementMapping.get(prefix);
-            if (tempList == null)
-                tempList = new ArrayList<>();
-            tempList.add(elementName);
-        } else {
-            tempList = new ArrayList<>();
-            tempList.add(elementName);
+    private Map<String, List<ChildNode>> childIndex() {
+        if (this._childIndex == null) {
+            Map<String, List<ChildNode>> index = new HashMap<>();
+            for (ChildNode child : this._children)
+                index.computeIfAbsent(child.getAttributeName(), k -> new ArrayList<>(1)).add(child);
+            this._childIndex = index;
         }
-        return this._namespacePrefixElementMapping.put(prefix, tempList);
+        return this._childIndex;
+    }
+
+    JsonNodeFactory nodeFactory() {
+        return this._nodeFactory;
+    }
+
+    // The children that belong to this node, i.e. none while they are still shared with a copyOnWrite() source
+    List<ChildNode> ownedChildren() {
+        return this._shared ? Collections.emptyList() : this._children;
+    }
+
+    // The children, first made private if they are still shared with a copyOnWrite() source, so that a node handed
+    // out to a caller is never the source's
+    List<ChildNode> childList() {
+        if (this._shared)
+            this.own();
+        return this._children;
+    }
+
+    // Children with the given name in document order, through the same lookup as get(String)
+    List<ChildNode> children(String propertyName) {
+        List<ChildNode> matches = this.named(propertyName);
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    private List<ChildNode> writableChildren() {
+        this.beforeChildWrite();
+        if (!(this._children instanceof ArrayList)) {
+            List<ChildNode> children = new ArrayList<>(Math.max(INITIAL_CHILD_CAPACITY, this._children.size() + 1));
+            children.addAll(this._children);
+            this._children = children;
+        }
+        return this._children;
+    }
+
+    private XmlNode putValue(String fieldName, JsonNode value) {
+        XmlNode n = new XmlNode(this._nodeFactory);
+        n.setValue(value);
+        this.addChild(fieldName, n);
+        return n;
+    }
+
+    public boolean isLeaf() {
+        return this._children.size() == 1 && this._children.get(0).isValueNode();
+    }
+
+    private Map<String, Object> writableAttributes() {
+        this.beforeWrite();
+        if (this._attributes == Collections.<String, Object>emptyMap())
+            this._attributes = new CompactMap<>();
+        return this._attributes;
+    }
+
+    void addNamespace(String prefix, String elementName) {
+        this.beforeWrite();
+        if (prefix == null || prefix.trim().isEmpty())
+            return;
+        if (this._elementPrefixMapping == Collections.<String, String>emptyMap())
+            this._elementPrefixMapping = new CompactMap<>();
+        // First registration wins: an element name is written with a single prefix within its parent
+        this._elementPrefixMapping.putIfAbsent(elementName, prefix);
     }
 
     public List<String> getNamespaceElements(String prefix) {
-        return this._namespacePrefixElementMapping.get(prefix);
+        List<String> elements = null;
+        for (Map.Entry<String, String> entry : this._elementPrefixMapping.entrySet()) {
+            if (entry.getValue().equals(prefix)) {
+                if (elements == null)
+                    elements = new ArrayList<>();
+                elements.add(entry.getKey());
+            }
+        }
+        return elements;
+    }
+
+    public String getElementPrefix(String elementName) {
+        return this._elementPrefixMapping.get(elementName);
+    }
+
+    public String getAttributePrefix(String attributeName) {
+        return this._attributePrefixMapping.get(attributeName);
     }
 
     public XmlNode putNamespaceURI(String prefix, String namespaceURI) {
+        this.beforeWrite();
+        if (this._namespacePrefixURIMapping == Collections.<String, String>emptyMap())
+            this._namespacePrefixURIMapping = new CompactMap<>();
         this._namespacePrefixURIMapping.put(prefix, namespaceURI);
         return this;
     }
@@ -514,11 +1119,69 @@ public class XmlNode extends ObjectNode {
     }
 
     public List<JsonNode> getValues() {
-        return this._children.stream().map(ChildNode::getNode).collect(Collectors.toList());
+        List<ChildNode> children = this.childList();
+        List<JsonNode> values = new ArrayList<>(children.size());
+        for (int i = 0; i < children.size(); i++)
+            values.add(children.get(i).getNode());
+        return values;
+    }
+
+    /**
+     * Walks the content of this node depth-first in document order: its attributes, then its children, entering and
+     * leaving each child element. The walk keeps its own stack, so it creates no iterators or streams and handles
+     * documents of any depth.
+     */
+    public void accept(XmlNodeVisitor visitor) {
+        XmlNode[] nodes = new XmlNode[16];
+        String[] names = new String[16];
+        int[] positions = new int[16];
+        int depth = 0;
+        nodes[0] = this;
+        visitAttributes(this, visitor);
+        while (true) {
+            XmlNode node = nodes[depth];
+            List<ChildNode> children = node.childList();
+            if (positions[depth] == children.size()) {
+                if (depth == 0)
+                    return;
+                nodes[depth] = null;
+                depth--;
+                visitor.leave(names[depth + 1], nodes[depth]._elementPrefixMapping.get(names[depth + 1]), node);
+                continue;
+            }
+            ChildNode child = children.get(positions[depth]++);
+            JsonNode value = child.getNode();
+            if (!(value instanceof XmlNode)) {
+                visitor.text(value);
+                continue;
+            }
+            String name = child.getAttributeName();
+            XmlNode element = (XmlNode) value;
+            if (!visitor.enter(name, node._elementPrefixMapping.get(name), element))
+                continue;
+            visitAttributes(element, visitor);
+            if (++depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth << 1);
+                names = Arrays.copyOf(names, depth << 1);
+                positions = Arrays.copyOf(positions, depth << 1);
+            }
+            nodes[depth] = element;
+            names[depth] = name;
+            positions[depth] = 0;
+        }
+    }
+
+    private static void visitAttributes(XmlNode node, XmlNodeVisitor visitor) {
+        if (node._attributes.isEmpty())
+            return;
+        for (Map.Entry<String, Object> attribute : node._attributes.entrySet())
+            visitor.attribute(attribute.getKey(), node._attributePrefixMapping.get(attribute.getKey()), attribute.getValue());
     }
 
     public void setValue(JsonNode _value) {
-        this._children.add(new ChildNode("@text", _value, true));
+        if (_value instanceof ArrayNode)
+            throw unsupportedArray("@text");
+        this.addChild(new ChildNode("@text", _value, true));
     }
 
     public void setValue(Object value) {
@@ -593,8 +1256,12 @@ public class XmlNode extends ObjectNode {
         this.setValue(value != null ? this.booleanNode(value) : this.nullNode());
     }
 
+    /**
+     * @return the attributes of this node; read-only while there are none, while they are still shared with a
+     * {@link #copyOnWrite()} source or once frozen, so use {@link #putAttribute} to add them
+     */
     public Map<String, Object> getAttributes() {
-        return this._attributes;
+        return this._shared ? Collections.unmodifiableMap(this._attributes) : this._attributes;
     }
 
     public Object getAttributeValue(String attributeName) {
@@ -618,50 +1285,51 @@ public class XmlNode extends ObjectNode {
             // Write namespace declarations
             for (Map.Entry<String, String> entry : this._namespacePrefixURIMapping.entrySet()) {
                 xmlGenerator.setNextIsAttribute(true);
-                xmlGenerator.writeFieldName(String.format("xmlns:%s", entry.getKey()));
+                xmlGenerator.writeFieldName("xmlns:" + entry.getKey());
                 xmlGenerator.writeString(entry.getValue());
                 xmlGenerator.setNextIsAttribute(false);
             }
 
             for (Map.Entry<String, Object> entry : this._attributes.entrySet()) {
                 xmlGenerator.setNextIsAttribute(true);
-                if (this._prefixAttributeMapping.containsValue(entry.getKey())) {
-                    Map.Entry<String, String> prefixAttributeEntry = this._prefixAttributeMapping.entrySet()
-                            .stream()
-                            .filter(p -> p.getValue().equals(entry.getKey()))
-                            .findFirst()
-                            .get();
-                    xmlGenerator.writeFieldName(String.format("%s:%s", prefixAttributeEntry.getKey(), prefixAttributeEntry.getValue()));
-                } else xmlGenerator.writeFieldName(entry.getKey());
+                String attributePrefix = this._attributePrefixMapping.get(entry.getKey());
+                if (attributePrefix != null)
+                    xmlGenerator.writeFieldName(attributePrefix + ':' + entry.getKey());
+                else xmlGenerator.writeFieldName(entry.getKey());
                 xmlGenerator.writeObject(entry.getValue());
                 //System.out.printf("Writing attribute %s: %s\n", entry.getKey(), entry.getValue());
                 xmlGenerator.setNextIsAttribute(false);
             }
 
             for (ChildNode entry : this._children) {
+                if (entry instanceof LazyChildNode && !((LazyChildNode) entry).isMaterialized()) {
+                    // Untouched lazy subtree: copy the original markup instead of parsing it just to write it out
+                    ((LazyChildNode) entry).writeRaw(xmlGenerator);
+                    continue;
+                }
                 String fieldName = entry.getAttributeName();
                 JsonNode entryNode = entry.getNode();
                 if (entryNode instanceof XmlNode || entryNode instanceof POJONode) {
-                    Map.Entry<String, List<String>> prefixEntry = this._namespacePrefixElementMapping.entrySet()
-                            .stream()
-                            .filter(e -> e.getValue().contains(fieldName))
-                            .findFirst()
-                            .orElse(null);
-                    if (prefixEntry != null && !prefixEntry.getKey().trim().isEmpty()) {
-                        //System.out.printf("Writing field %s:%s\n", prefixEntry.getKey(), fieldName);
-                        xmlGenerator.writeFieldName(String.format("%s:%s", prefixEntry.getKey(), fieldName));
+                    String prefix = this._elementPrefixMapping.get(fieldName);
+                    if (prefix != null) {
+                        //System.out.printf("Writing field %s:%s\n", prefix, fieldName);
+                        xmlGenerator.writeFieldName(prefix + ':' + fieldName);
                     } else {
                         //System.out.printf("Writing field name: %s\n", fieldName);
                         xmlGenerator.writeFieldName(fieldName);
                     }
                     entryNode.serialize(xmlGenerator, provider); // Let child nodes handle their own serialization
                     // Write text content of the current node (if any)
+                } else if (entryNode.isContainerNode()) {
+                    throw unsupportedContainer(fieldName, entryNode, xmlGenerator);
                 } else {
                     xmlGenerator.setNextIsUnwrapped(true);
                     xmlGenerator.writeFieldName(""); // Key change: empty field name for text
-                    if (entryNode instanceof CDATANode)
-                        xmlGenerator.writeRaw(entryNode.asText());
-                    else xmlGenerator.writeObject(entryNode);
+                    if (entryNode instanceof CDATANode) {
+                        xmlGenerator.setNextIsCData(true);
+                        xmlGenerator.writeString(entryNode.textValue());
+                        xmlGenerator.setNextIsCData(false);
+                    } else xmlGenerator.writeObject(entryNode);
                     //System.out.printf("Writing value %s\n", this._value.asText());
                     xmlGenerator.setNextIsUnwrapped(false);
                 }
@@ -672,82 +1340,228 @@ public class XmlNode extends ObjectNode {
     }
 
     static class XmlNodeDeserializer extends JsonDeserializer<XmlNode> {
+        // Reader attribute holding an XmlProjection; when set, only the selected subtrees are built
+        static final String PROJECTION = XmlProjection.class.getName();
+        // Reader attribute holding an XmlNodePool to draw the nodes of the tree from
+        static final String POOL = XmlNodePool.class.getName();
+
+        private final XmlSymbolTable symbols;
+
+        XmlNodeDeserializer() {
+            this(XmlSymbolTable.getDefault());
+        }
+
+        XmlNodeDeserializer(XmlSymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        XmlSymbolTable getSymbols() {
+            return this.symbols;
+        }
 
         @Override
         public XmlNode deserialize(JsonParser p, DeserializationContext ctxt) {
-            XmlNode xmlNode = new XmlNode(JsonNodeFactory.instance);
+            XmlNodePool pool = (XmlNodePool) ctxt.getAttribute(POOL);
+            return this.deserialize(p, ctxt, pool != null ? pool.acquire() : new XmlNode(JsonNodeFactory.instance));
+        }
+
+        // Reads the document into xmlNode, after whatever it already holds
+        @Override
+        public XmlNode deserialize(JsonParser p, DeserializationContext ctxt, XmlNode xmlNode) {
             if (p instanceof FromXmlParser) {
-                Deque<XmlNode> nodeStack = new ArrayDeque<>();
                 XMLStreamReader reader = ((FromXmlParser) p).getStaxReader();
-                String rootName = reader.getLocalName(), text;
-                //System.out.printf("%s is standalone: %s%n", rootName, reader.isStandalone());
+                //System.out.printf("%s is standalone: %s%n", reader.getLocalName(), reader.isStandalone());
+                XmlProjection projection = (XmlProjection) ctxt.getAttribute(PROJECTION);
                 try {
-                    nodeStack.push(xmlNode);
-                    //System.out.printf("Start %s%n", rootName);
-                    for (int i = 0; i < reader.getAttributeCount(); i++) {
-                        //System.out.printf("%s=%s%n", reader.getAttributeName(i), reader.getAttributeValue(i));
-                        xmlNode.putAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
-                    }
-                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
-                        xmlNode._namespacePrefixURIMapping.put(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
-                        //System.out.printf("%s:%s -> %s%n", reader.getNamespacePrefix(i), reader.getLocalName(), reader.getNamespaceURI(i));
-                    }
-                    xmlNode.addNamespace(reader.getPrefix(), reader.getLocalName());
-                    //System.out.printf("%s:%s%n", reader.getPrefix(), reader.getLocalName());
-                    while (reader.hasNext()) {
-                        switch (reader.next()) {
-                            case XMLStreamConstants.START_ELEMENT:
-                                XmlNode parentNode = nodeStack.peek();
-                                XmlNode childNode = parentNode.putObject(reader.getLocalName());
-                                //System.out.printf("Start %s%n", reader.getName());
-                                for (int i = 0; i < reader.getAttributeCount(); i++) {
-                                    String prefix = reader.getAttributeName(i).getPrefix();
-                                    //System.out.printf("%s=%s%n", reader.getAttributeName(i), reader.getAttributeValue(i));
-                                    String attributeLocalName = reader.getAttributeLocalName(i);
-                                    String attributeValue = reader.getAttributeValue(i);
-                                    if (prefix != null && !prefix.trim().isEmpty())
-                                        childNode.putAttribute(prefix, attributeLocalName, attributeValue);
-                                    else
-                                        childNode.putAttribute(attributeLocalName, attributeValue);
-                                }
-                                for (int i = 0; i < reader.getNamespaceCount(); i++) {
-                                    parentNode._namespacePrefixURIMapping.put(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
-                                    //System.out.printf("%s:%s -> %s%n", reader.getNamespacePrefix(i), reader.getLocalName(), reader.getNamespaceURI(i));
-                                }
-                                parentNode.addNamespace(reader.getPrefix(), reader.getLocalName());
-                                //System.out.printf("%s:%s%n", reader.getPrefix(), reader.getLocalName());
-                                nodeStack.push(childNode);
-                                break;
-                            case XMLStreamConstants.END_ELEMENT:
-                                //System.out.printf("End %s%n", reader.getName());
-                                if (!nodeStack.isEmpty())
-                                    nodeStack.pop();
-                                break;
-                            case XMLStreamConstants.CDATA:
-                                text = reader.getText().trim();
-                                if (!text.isEmpty()) {
-                                    XmlNode currentNode = nodeStack.peek();
-                                    currentNode.setValue(new CDATANode(String.format("<![CDATA[%s]]>", text)));
-                                }
-                                break;
-                            case XMLStreamConstants.CHARACTERS:
-                            case XMLStreamConstants.SPACE:
-                                text = reader.getText().trim();
-                                if (!text.isEmpty()) {
-                                    //System.out.printf("text: %s%n", text);
-                                    XmlNode currentNode = nodeStack.peek();
-                                    currentNode.setValue(TextNode.valueOf(text));
-                                }
-                                break;
-                        }
-                    }
+                    if (projection != null)
+                        projection.read(reader, xmlNode, JsonNodeFactory.instance, this);
+                    else
+                        this.readElement(reader, xmlNode, (XmlNodePool) ctxt.getAttribute(POOL));
                 } catch (XMLStreamException e) {
                     throw new RuntimeException(e);
                 }
             }
             return xmlNode;
         }
+
+        // Builds xmlNode from the element the reader is positioned on (START_ELEMENT) and leaves the reader on the
+        // matching END_ELEMENT.
+        XmlNode readElement(XMLStreamReader reader, XmlNode xmlNode) throws XMLStreamException {
+            return this.readElement(reader, xmlNode, null);
+        }
+
+        // Same, taking the descendants of xmlNode from pool if there is one
+        XmlNode readElement(XMLStreamReader reader, XmlNode xmlNode, XmlNodePool pool) throws XMLStreamException {
+            ElementBuilder builder = new ElementBuilder(reader, xmlNode, pool);
+            while (reader.hasNext()) {
+                if (builder.accept(reader, reader.next()))
+                    break;
+            }
+            return xmlNode;
+        }
+
+        /**
+         * The node stack behind {@link #readElement}, advanced one reader event at a time so that push parsers can
+         * drive it as events become available.
+         */
+        final class ElementBuilder {
+            private final Deque<XmlNode> nodeStack = new ArrayDeque<>();
+            private final TextBuffer text = new TextBuffer();
+            private final XmlNodePool pool;
+
+            // The reader must be positioned on the START_ELEMENT of the element that becomes xmlNode
+            ElementBuilder(XMLStreamReader reader, XmlNode xmlNode) {
+                this(reader, xmlNode, null);
+            }
+
+            ElementBuilder(XMLStreamReader reader, XmlNode xmlNode, XmlNodePool pool) {
+                this(xmlNode, pool);
+                //System.out.printf("Start %s%n", reader.getLocalName());
+                XmlNodeDeserializer.this.readRootAttributes(reader, xmlNode);
+            }
+
+            // Builds only the content of xmlNode; its own attributes are left to the caller
+            ElementBuilder(XmlNode xmlNode) {
+                this(xmlNode, null);
+            }
+
+            ElementBuilder(XmlNode xmlNode, XmlNodePool pool) {
+                this.pool = pool;
+                this.nodeStack.push(xmlNode);
+            }
+
+            // The innermost element still open
+            XmlNode current() {
+                return this.nodeStack.peek();
+            }
+
+            // Applies the event the reader is positioned on; returns true once the element has been closed
+            boolean accept(XMLStreamReader reader, int event) {
+                XmlSymbolTable symbols = XmlNodeDeserializer.this.symbols;
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        XmlNode parentNode = this.nodeStack.peek();
+                        this.text.flush(parentNode, symbols);
+                        XmlNode childNode;
+                        if (this.pool != null) {
+                            childNode = this.pool.acquire();
+                            parentNode.addChild(new ChildNode(symbols.symbol(reader.getLocalName()), childNode));
+                        } else {
+                            childNode = parentNode.putObject(symbols.symbol(reader.getLocalName()));
+                        }
+                        //System.out.printf("Start %s%n", reader.getName());
+                        XmlNodeDeserializer.this.readChildAttributes(reader, childNode);
+                        XmlNodeDeserializer.this.registerChildNamespaces(reader, parentNode);
+                        this.nodeStack.push(childNode);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        //System.out.printf("End %s%n", reader.getName());
+                        this.text.flush(this.nodeStack.pop(), symbols);
+                        break;
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        this.text.append(reader);
+                        break;
+                }
+                return this.nodeStack.isEmpty();
+            }
+        }
+
+        void readRootAttributes(XMLStreamReader reader, XmlNode xmlNode) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                //System.out.printf("%s=%s%n", reader.getAttributeName(i), reader.getAttributeValue(i));
+                xmlNode.putAttribute(this.symbols.symbol(reader.getAttributeLocalName(i)),
+                        this.symbols.stringValue(reader.getAttributeValue(i)));
+            }
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                xmlNode.putNamespaceURI(this.symbols.symbol(reader.getNamespacePrefix(i)),
+                        this.symbols.symbol(reader.getNamespaceURI(i)));
+                //System.out.printf("%s:%s -> %s%n", reader.getNamespacePrefix(i), reader.getLocalName(), reader.getNamespaceURI(i));
+            }
+            xmlNode.addNamespace(this.symbols.symbol(reader.getPrefix()), this.symbols.symbol(reader.getLocalName()));
+            //System.out.printf("%s:%s%n", reader.getPrefix(), reader.getLocalName());
+        }
+
+        void readChildAttributes(XMLStreamReader reader, XmlNode childNode) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String prefix = reader.getAttributePrefix(i);
+                //System.out.printf("%s=%s%n", reader.getAttributeName(i), reader.getAttributeValue(i));
+                String attributeLocalName = this.symbols.symbol(reader.getAttributeLocalName(i));
+                String attributeValue = this.symbols.stringValue(reader.getAttributeValue(i));
+                if (prefix != null && !prefix.trim().isEmpty())
+                    childNode.putAttribute(this.symbols.symbol(prefix), attributeLocalName, attributeValue);
+                else
+                    childNode.putAttribute(attributeLocalName, attributeValue);
+            }
+        }
+
+        // Namespaces declared on a child element, and the child's own prefix, are recorded on the parent so that the
+        // parent can write the prefixed element name.
+        void registerChildNamespaces(XMLStreamReader reader, XmlNode parentNode) {
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                parentNode.putNamespaceURI(this.symbols.symbol(reader.getNamespacePrefix(i)),
+                        this.symbols.symbol(reader.getNamespaceURI(i)));
+                //System.out.printf("%s:%s -> %s%n", reader.getNamespacePrefix(i), reader.getLocalName(), reader.getNamespaceURI(i));
+            }
+            parentNode.addNamespace(this.symbols.symbol(reader.getPrefix()), this.symbols.symbol(reader.getLocalName()));
+            //System.out.printf("%s:%s%n", reader.getPrefix(), reader.getLocalName());
+        }
+
     }
 
-}
 
+    // Indexed iteration over a child list, in place of a stream pipeline per call
+    private abstract static class ChildIterator<T> implements Iterator<T> {
+        private final List<ChildNode> children;
+        private int next;
+
+        ChildIterator(List<ChildNode> children) {
+            this.children = children;
+        }
+
+        abstract T value(ChildNode child);
+
+        @Override
+        public boolean hasNext() {
+            return this.next < this.children.size();
+        }
+
+        @Override
+        public T next() {
+            if (this.next >= this.children.size())
+                throw new NoSuchElementException();
+            return this.value(this.children.get(this.next++));
+        }
+    }
+
+    /**
+     * The validity of the name summaries computed in one pass of nameSummary(). Scopes merged by later passes form a
+     * union-find tree whose root decides for all of them.
+     */
+    private static final class SummaryScope {
+        // Tags the nodes of snapshots, whose summaries never change
+        static final SummaryScope FROZEN = new SummaryScope();
+
+        private SummaryScope mergedInto;
+        private boolean valid = true;
+
+        SummaryScope resolve() {
+            SummaryScope root = this;
+            while (root.mergedInto != null)
+                root = root.mergedInto;
+            for (SummaryScope scope = this; scope != root; ) {
+                SummaryScope next = scope.mergedInto;
+                scope.mergedInto = root;
+                scope = next;
+            }
+            return root;
+        }
+
+        // Makes other, a resolved and valid scope, share this scope's validity
+        void merge(SummaryScope other) {
+            if (other != this && other != FROZEN)
+                other.mergedInto = this;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Assembles the children of one {@link XmlNode} from many threads without locking. Each contributor reserves a
+ * section, a detached {@link XmlNode} that only it writes to with the usual builder methods, and {@link #seal()}
+ * moves the children of every section into the root in reservation order. Attributes, namespace declarations and
+ * prefixes put on a section go to the root as well, the first section to register an element prefix winning.
+ * <p>
+ * Reserve sections from the coordinating thread before handing them out to get the same child order on every run.
+ * Call {@link #seal()} once every contributor has finished, after joining them, so that their writes are visible.
+ */
+public final class XmlNodeAssembler {
+    private final XmlNode root;
+    private final ConcurrentLinkedQueue<XmlNode> sections = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sealed = new AtomicBoolean();
+
+    /**
+     * @param root the node to assemble into; it must not be modified again until {@link #seal()} returns
+     */
+    public XmlNodeAssembler(XmlNode root) {
+        this.root = root;
+    }
+
+    /**
+     * @return a new, empty section placed after all sections reserved before it; safe to call from any thread
+     */
+    public XmlNode reserve() {
+        if (this.sealed.get())
+            throw new IllegalStateException("XmlNodeAssembler is sealed");
+        XmlNode section = new XmlNode(this.root.nodeFactory());
+        this.sections.add(section);
+        return section;
+    }
+
+    /**
+     * Adds one child in a section of its own; safe to call from any thread.
+     */
+    public void add(String name, JsonNode child) {
+        this.reserve().set(name, child);
+    }
+
+    /**
+     * Moves the content of every section into the root, in reservation order, and returns the root.
+     */
+    public XmlNode seal() {
+        if (!this.sealed.compareAndSet(false, true))
+            throw new IllegalStateException("XmlNodeAssembler is sealed");
+        XmlNode root = this.root;
+        for (XmlNode section : this.sections) {
+            for (Map.Entry<String, String> entry : section._namespacePrefixURIMapping.entrySet())
+                root.putNamespaceURI(entry.getKey(), entry.getValue());
+            for (Map.Entry<String, Object> entry : section._attributes.entrySet())
+                root.putAttribute(section.getAttributePrefix(entry.getKey()), entry.getKey(), entry.getValue());
+            for (Map.Entry<String, String> entry : section._elementPrefixMapping.entrySet())
+                root.addNamespace(entry.getValue(), entry.getKey());
+            for (ChildNode child : section._children)
+                root.addChild(child);
+        }
+        this.sections.clear();
+        return root;
+    }
+}
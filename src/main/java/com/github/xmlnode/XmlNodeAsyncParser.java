@@ -0,0 +1,125 @@
+package com.github.xmlnode;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.codehaus.stax2.XMLInputFactory2;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Push parser that builds one {@link XmlNode} from byte chunks as they arrive, e.g. from a non-blocking socket.
+ * Every {@link #feed} call parses as far as the bytes received so far allow and never blocks waiting for more, so
+ * the tree is built while the body is still arriving and the body itself is never buffered. Requires the optional
+ * {@code com.fasterxml:aalto-xml} dependency. Not thread-safe.
+ */
+public final class XmlNodeAsyncParser implements Closeable {
+    private static final AsyncXMLInputFactory INPUT_FACTORY = newInputFactory();
+
+    private final AsyncXMLStreamReader<AsyncByteBufferFeeder> reader;
+    private final JsonNodeFactory nodeFactory;
+    private final XmlNode.XmlNodeDeserializer deserializer;
+    private XmlNode root;
+    private XmlNode.XmlNodeDeserializer.ElementBuilder builder;
+    private boolean done;
+
+    XmlNodeAsyncParser(JsonNodeFactory nodeFactory, XmlNode.XmlNodeDeserializer deserializer) {
+        this.reader = INPUT_FACTORY.createAsyncForByteBuffer();
+        this.nodeFactory = nodeFactory;
+        this.deserializer = deserializer;
+    }
+
+    private static AsyncXMLInputFactory newInputFactory() {
+        AsyncXMLInputFactory inputFactory = new InputFactoryImpl();
+        // Same event reporting as the blocking codec, so that CDATANode survives
+        inputFactory.setProperty(XMLInputFactory2.P_REPORT_CDATA, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        return inputFactory;
+    }
+
+    /**
+     * Parses the remaining bytes of {@code chunk}. The chunk is read in place and must not be modified until this
+     * returns; afterwards it has been fully consumed and may be reused.
+     *
+     * @return the document once its root element has been closed by this chunk, otherwise null
+     */
+    public XmlNode feed(ByteBuffer chunk) throws IOException {
+        if (!chunk.hasRemaining())
+            return null;
+        try {
+            this.reader.getInputFeeder().feedInput(chunk);
+            return this.advance();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public XmlNode feed(byte[] chunk, int offset, int length) throws IOException {
+        return this.feed(ByteBuffer.wrap(chunk, offset, length));
+    }
+
+    /**
+     * Signals that no more input will arrive and checks that a complete document was received.
+     */
+    public void endOfInput() throws IOException {
+        this.reader.getInputFeeder().endOfInput();
+        try {
+            this.advance();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        if (!this.done)
+            throw new IOException("Incomplete XML document: input ended before the root element was closed");
+    }
+
+    /**
+     * @return true once the root element has been closed
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * @return the document, complete once {@link #isDone()}; children are added as their start tags arrive
+     */
+    public XmlNode getRoot() {
+        return this.root;
+    }
+
+    // Applies every event available from the input fed so far
+    private XmlNode advance() throws XMLStreamException {
+        XmlNode completed = null;
+        while (this.reader.hasNext()) {
+            int event = this.reader.next();
+            if (event == AsyncXMLStreamReader.EVENT_INCOMPLETE)
+                break;
+            if (this.builder != null) {
+                if (this.builder.accept(this.reader, event)) {
+                    this.builder = null;
+                    this.done = true;
+                    completed = this.root;
+                }
+            } else if (event == XMLStreamConstants.START_ELEMENT && this.root == null) {
+                this.root = new XmlNode(this.nodeFactory);
+                this.builder = this.deserializer.new ElementBuilder(this.reader, this.root);
+            }
+        }
+        return completed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
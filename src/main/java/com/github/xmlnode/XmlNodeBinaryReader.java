@@ -0,0 +1,299 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.FloatNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ShortNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.xmlnode.BinaryFormat.*;
+
+/**
+ * Reads the documents written by {@link XmlNodeBinaryWriter} back into {@link XmlNode} trees, one per
+ * {@link #read()} call. Not thread-safe.
+ */
+public final class XmlNodeBinaryReader implements Closeable {
+    private final InputStream in;
+    private final JsonNodeFactory nodeFactory;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private final List<String> names = new ArrayList<>();
+    private final List<TextNode> values = new ArrayList<>();
+
+    public XmlNodeBinaryReader(InputStream in, JsonNodeFactory nodeFactory) throws IOException {
+        this.in = in;
+        this.nodeFactory = nodeFactory;
+        for (byte b : MAGIC) {
+            if (this.readByte() != b)
+                throw new IOException("Not an XmlNode binary stream");
+        }
+        int version = this.readByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported XmlNode binary version %d", version));
+    }
+
+    /**
+     * @return the next document, or null at the end of the stream
+     */
+    public XmlNode read() throws IOException {
+        if (this.position == this.limit && !this.fill())
+            return null;
+        int marker = this.readByte();
+        if (marker != DOCUMENT)
+            throw new IOException(String.format("Corrupt XmlNode binary stream: unexpected marker %d", marker));
+        XmlNode root = new XmlNode(this.nodeFactory);
+        XmlNode[] nodes = new XmlNode[16];
+        int[] remaining = new int[16];
+        int depth = 0;
+        nodes[0] = root;
+        remaining[0] = this.readHead(root);
+        while (depth >= 0) {
+            if (remaining[depth] == 0) {
+                nodes[depth--] = null;
+                continue;
+            }
+            remaining[depth]--;
+            XmlNode parent = nodes[depth];
+            String name = this.readName();
+            int tag = this.readByte();
+            boolean valueNode = (tag & VALUE_NODE) != 0;
+            tag &= ~VALUE_NODE;
+            if (tag == LEAF) {
+                XmlNode child = new XmlNode(this.nodeFactory);
+                int valueTag = this.readByte();
+                JsonNode value = this.readValue(valueTag & ~VALUE_NODE);
+                child.addChild(new ChildNode("@text", value, (valueTag & VALUE_NODE) != 0));
+                parent.addChild(new ChildNode(name, child, valueNode));
+            } else if (tag == ELEMENT) {
+                XmlNode child = new XmlNode(this.nodeFactory);
+                parent.addChild(new ChildNode(name, child, valueNode));
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth << 1);
+                    remaining = Arrays.copyOf(remaining, depth << 1);
+                }
+                nodes[depth] = child;
+                remaining[depth] = this.readHead(child);
+            } else parent.addChild(new ChildNode(name, this.readValue(tag), valueNode));
+        }
+        return root;
+    }
+
+    // Reads namespaces, attributes and prefix mappings into node and returns its child count
+    private int readHead(XmlNode node) throws IOException {
+        int flags = this.readByte();
+        for (int i = (flags & HAS_NAMESPACES) != 0 ? this.readCount() : 0; i > 0; i--)
+            node.putNamespaceURI(this.readName(), this.readName());
+        for (int i = (flags & HAS_ATTRIBUTES) != 0 ? this.readCount() : 0; i > 0; i--) {
+            String name = this.readName();
+            String prefix = this.readName();
+            Object value = this.readAttributeValue();
+            if (prefix != null)
+                node.putAttribute(prefix, name, value);
+            else
+                node.putAttribute(name, value);
+        }
+        for (int i = (flags & HAS_PREFIXES) != 0 ? this.readCount() : 0; i > 0; i--) {
+            String name = this.readName();
+            node.addNamespace(this.readName(), name);
+        }
+        return this.readCount();
+    }
+
+    private Object readAttributeValue() throws IOException {
+        int tag = this.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TEXT:
+                return this.readValueString().textValue();
+            case INT:
+                return (int) this.readZigZag();
+            case LONG:
+                return this.readZigZag();
+            case SHORT:
+                return (short) this.readZigZag();
+            case DOUBLE:
+                return Double.longBitsToDouble(this.readFixed(8));
+            case FLOAT:
+                return Float.intBitsToFloat((int) this.readFixed(4));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BIG_INTEGER:
+                return new BigInteger(this.readBytes());
+            case DECIMAL:
+                int scale = (int) this.readZigZag();
+                return new BigDecimal(new BigInteger(this.readBytes()), scale);
+            case BINARY:
+                return this.readBytes();
+            default:
+                throw new IOException(String.format("Corrupt XmlNode binary stream: unknown attribute tag %d", tag));
+        }
+    }
+
+    private JsonNode readValue(int tag) throws IOException {
+        switch (tag) {
+            case TEXT:
+                return this.readValueString();
+            case CDATA:
+                return CDATANode.ofContent(this.readValueString().textValue());
+            case INT:
+                return IntNode.valueOf((int) this.readZigZag());
+            case LONG:
+                return LongNode.valueOf(this.readZigZag());
+            case SHORT:
+                return ShortNode.valueOf((short) this.readZigZag());
+            case DOUBLE:
+                return DoubleNode.valueOf(Double.longBitsToDouble(this.readFixed(8)));
+            case FLOAT:
+                return FloatNode.valueOf(Float.intBitsToFloat((int) this.readFixed(4)));
+            case TRUE:
+                return BooleanNode.TRUE;
+            case FALSE:
+                return BooleanNode.FALSE;
+            case NULL:
+                return NullNode.getInstance();
+            case BINARY:
+                return BinaryNode.valueOf(this.readBytes());
+            case BIG_INTEGER:
+                return BigIntegerNode.valueOf(new BigInteger(this.readBytes()));
+            case DECIMAL:
+                int scale = (int) this.readZigZag();
+                return DecimalNode.valueOf(new BigDecimal(new BigInteger(this.readBytes()), scale));
+            default:
+                throw new IOException(String.format("Corrupt XmlNode binary stream: unknown value tag %d", tag));
+        }
+    }
+
+    private String readName() throws IOException {
+        int ref = this.readCount();
+        if (ref == NULL_STRING)
+            return null;
+        if (ref == NEW_STRING) {
+            String s = this.readUtf8();
+            this.names.add(s);
+            return s;
+        }
+        return this.lookup(this.names, ref);
+    }
+
+    private TextNode readValueString() throws IOException {
+        int ref = this.readCount();
+        if (ref == NEW_STRING) {
+            String s = this.readUtf8();
+            TextNode node = TextNode.valueOf(s);
+            if (isSharedValue(s) && this.values.size() < VALUE_TABLE_CAPACITY)
+                this.values.add(node);
+            return node;
+        }
+        if (ref == NULL_STRING)
+            throw new IOException("Corrupt XmlNode binary stream: null text value");
+        return this.lookup(this.values, ref);
+    }
+
+    private <T> T lookup(List<T> table, int ref) throws IOException {
+        int index = ref - FIRST_INDEX;
+        if (index >= table.size())
+            throw new IOException(String.format("Corrupt XmlNode binary stream: unknown string reference %d", index));
+        return table.get(index);
+    }
+
+    private String readUtf8() throws IOException {
+        int length = this.readCount();
+        if (this.limit - this.position >= length) {
+            String s = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return s;
+        }
+        return new String(this.readFully(length), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes() throws IOException {
+        return this.readFully(this.readCount());
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int copied = Math.min(length, this.limit - this.position);
+        System.arraycopy(this.buffer, this.position, bytes, 0, copied);
+        this.position += copied;
+        while (copied < length) {
+            int n = this.in.read(bytes, copied, length - copied);
+            if (n < 0)
+                throw new EOFException("Truncated XmlNode binary stream");
+            copied += n;
+        }
+        return bytes;
+    }
+
+    private int readCount() throws IOException {
+        long v = this.readVarint();
+        if (v > Integer.MAX_VALUE)
+            throw new IOException("Corrupt XmlNode binary stream: count out of range");
+        return (int) v;
+    }
+
+    private long readZigZag() throws IOException {
+        long v = this.readVarint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private long readVarint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = this.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new IOException("Corrupt XmlNode binary stream: varint too long");
+    }
+
+    private long readFixed(int bytes) throws IOException {
+        long v = 0;
+        for (int i = 0; i < bytes; i++)
+            v |= (long) this.readByte() << (i << 3);
+        return v;
+    }
+
+    private int readByte() throws IOException {
+        if (this.position == this.limit && !this.fill())
+            throw new EOFException("Truncated XmlNode binary stream");
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = this.in.read(this.buffer, 0, this.buffer.length);
+        if (n <= 0)
+            return false;
+        this.position = 0;
+        this.limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.FloatNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ShortNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.xmlnode.BinaryFormat.*;
+
+/**
+ * Streams {@link XmlNode} trees in the compact binary form read back by {@link XmlNodeBinaryReader}. Any number of
+ * documents can be written to one stream; names and short values already written are referenced by index. Element
+ * structure, namespaces, prefixes, attributes with their Java types, {@link CDATANode}s and scalar values round-trip
+ * exactly; POJO and JSON container values are rejected. Not thread-safe.
+ */
+public final class XmlNodeBinaryWriter implements Closeable, Flushable {
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private final Map<String, Integer> names = new HashMap<>();
+    private final Map<String, Integer> values = new HashMap<>();
+
+    public XmlNodeBinaryWriter(OutputStream out) throws IOException {
+        this.out = out;
+        for (byte b : MAGIC)
+            this.writeByte(b);
+        this.writeByte(VERSION);
+    }
+
+    public void write(XmlNode node) throws IOException {
+        this.writeByte(DOCUMENT);
+        XmlNode[] nodes = new XmlNode[16];
+        int[] positions = new int[16];
+        int depth = 0;
+        nodes[0] = node;
+        this.writeHead(node);
+        while (depth >= 0) {
+            XmlNode current = nodes[depth];
+            List<ChildNode> children = current._children;
+            if (positions[depth] == children.size()) {
+                nodes[depth--] = null;
+                continue;
+            }
+            ChildNode entry = children.get(positions[depth]++);
+            JsonNode entryNode = entry.getNode();
+            this.writeName(entry.getAttributeName());
+            int flags = entry.isValueNode() ? VALUE_NODE : 0;
+            if (entryNode instanceof XmlNode && isPlainLeaf((XmlNode) entryNode)) {
+                this.writeByte(LEAF | flags);
+                ChildNode value = ((XmlNode) entryNode)._children.get(0);
+                this.writeValue(value.getNode(), value.isValueNode() ? VALUE_NODE : 0);
+            } else if (entryNode instanceof XmlNode) {
+                this.writeByte(ELEMENT | flags);
+                this.writeHead((XmlNode) entryNode);
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth << 1);
+                    positions = Arrays.copyOf(positions, depth << 1);
+                }
+                nodes[depth] = (XmlNode) entryNode;
+                positions[depth] = 0;
+            } else this.writeValue(entryNode, flags);
+        }
+    }
+
+    private void writeHead(XmlNode node) throws IOException {
+        Map<String, String> namespaces = node._namespacePrefixURIMapping;
+        Map<String, Object> attributes = node._attributes;
+        Map<String, String> prefixes = node._elementPrefixMapping;
+        this.writeByte((namespaces.isEmpty() ? 0 : HAS_NAMESPACES) | (attributes.isEmpty() ? 0 : HAS_ATTRIBUTES)
+                | (prefixes.isEmpty() ? 0 : HAS_PREFIXES));
+        if (!namespaces.isEmpty()) {
+            this.writeVarint(namespaces.size());
+            for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+                this.writeName(entry.getKey());
+                this.writeName(entry.getValue());
+            }
+        }
+        if (!attributes.isEmpty()) {
+            this.writeVarint(attributes.size());
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                this.writeName(entry.getKey());
+                this.writeName(node._attributePrefixMapping.get(entry.getKey()));
+                this.writeAttributeValue(entry.getValue());
+            }
+        }
+        if (!prefixes.isEmpty()) {
+            this.writeVarint(prefixes.size());
+            for (Map.Entry<String, String> entry : prefixes.entrySet()) {
+                this.writeName(entry.getKey());
+                this.writeName(entry.getValue());
+            }
+        }
+        this.writeVarint(node._children.size());
+    }
+
+    private void writeAttributeValue(Object value) throws IOException {
+        if (value == null)
+            this.writeByte(NULL);
+        else if (value instanceof String) {
+            this.writeByte(TEXT);
+            this.writeValueString((String) value);
+        } else if (value instanceof Integer) {
+            this.writeByte(INT);
+            this.writeZigZag((Integer) value);
+        } else if (value instanceof Long) {
+            this.writeByte(LONG);
+            this.writeZigZag((Long) value);
+        } else if (value instanceof Short) {
+            this.writeByte(SHORT);
+            this.writeZigZag((Short) value);
+        } else if (value instanceof Double) {
+            this.writeByte(DOUBLE);
+            this.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+        } else if (value instanceof Float) {
+            this.writeByte(FLOAT);
+            this.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+        } else if (value instanceof Boolean)
+            this.writeByte((Boolean) value ? TRUE : FALSE);
+        else if (value instanceof BigInteger) {
+            this.writeByte(BIG_INTEGER);
+            this.writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof BigDecimal) {
+            this.writeByte(DECIMAL);
+            this.writeZigZag(((BigDecimal) value).scale());
+            this.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        } else if (value instanceof byte[]) {
+            this.writeByte(BINARY);
+            this.writeBytes((byte[]) value);
+        } else
+            throw new IOException(String.format("Cannot encode attribute value of type %s", value.getClass().getName()));
+    }
+
+    private void writeValue(JsonNode value, int flags) throws IOException {
+        if (value instanceof CDATANode) {
+            this.writeByte(CDATA | flags);
+            this.writeValueString(value.textValue());
+        } else if (value instanceof TextNode) {
+            this.writeByte(TEXT | flags);
+            this.writeValueString(value.textValue());
+        } else if (value instanceof IntNode) {
+            this.writeByte(INT | flags);
+            this.writeZigZag(value.intValue());
+        } else if (value instanceof LongNode) {
+            this.writeByte(LONG | flags);
+            this.writeZigZag(value.longValue());
+        } else if (value instanceof ShortNode) {
+            this.writeByte(SHORT | flags);
+            this.writeZigZag(value.shortValue());
+        } else if (value instanceof DoubleNode) {
+            this.writeByte(DOUBLE | flags);
+            this.writeFixed(Double.doubleToRawLongBits(value.doubleValue()), 8);
+        } else if (value instanceof FloatNode) {
+            this.writeByte(FLOAT | flags);
+            this.writeFixed(Float.floatToRawIntBits(value.floatValue()), 4);
+        } else if (value instanceof BooleanNode)
+            this.writeByte((value.booleanValue() ? TRUE : FALSE) | flags);
+        else if (value instanceof NullNode)
+            this.writeByte(NULL | flags);
+        else if (value instanceof BinaryNode) {
+            this.writeByte(BINARY | flags);
+            this.writeBytes(value.binaryValue());
+        } else if (value instanceof BigIntegerNode) {
+            this.writeByte(BIG_INTEGER | flags);
+            this.writeBytes(value.bigIntegerValue().toByteArray());
+        } else if (value instanceof DecimalNode) {
+            this.writeByte(DECIMAL | flags);
+            this.writeZigZag(value.decimalValue().scale());
+            this.writeBytes(value.decimalValue().unscaledValue().toByteArray());
+        } else
+            throw new IOException(String.format("Cannot encode value of type %s", value.getClass().getName()));
+    }
+
+    private void writeName(String s) throws IOException {
+        this.writeString(s, this.names, true);
+    }
+
+    private void writeValueString(String s) throws IOException {
+        this.writeString(s, this.values, isSharedValue(s) && this.values.size() < VALUE_TABLE_CAPACITY);
+    }
+
+    private void writeString(String s, Map<String, Integer> table, boolean share) throws IOException {
+        if (s == null) {
+            this.writeVarint(NULL_STRING);
+            return;
+        }
+        Integer index = table.get(s);
+        if (index != null) {
+            this.writeVarint(index + FIRST_INDEX);
+            return;
+        }
+        if (share)
+            table.put(s, table.size());
+        this.writeVarint(NEW_STRING);
+        this.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        this.writeVarint(bytes.length);
+        if (bytes.length > this.buffer.length - this.position) {
+            this.flushBuffer();
+            if (bytes.length > this.buffer.length) {
+                this.out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    private void writeZigZag(long v) throws IOException {
+        this.writeVarint((v << 1) ^ (v >> 63));
+    }
+
+    private void writeVarint(long v) throws IOException {
+        if (this.buffer.length - this.position < 10)
+            this.flushBuffer();
+        while ((v & ~0x7FL) != 0) {
+            this.buffer[this.position++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        this.buffer[this.position++] = (byte) v;
+    }
+
+    private void writeFixed(long v, int bytes) throws IOException {
+        if (this.buffer.length - this.position < bytes)
+            this.flushBuffer();
+        for (int i = 0; i < bytes; i++, v >>>= 8)
+            this.buffer[this.position++] = (byte) v;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (this.position == this.buffer.length)
+            this.flushBuffer();
+        this.buffer[this.position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flushBuffer();
+        } finally {
+            this.out.close();
+        }
+    }
+}
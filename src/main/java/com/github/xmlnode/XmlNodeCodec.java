@@ -0,0 +1,453 @@
+package com.github.xmlnode;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import org.codehaus.stax2.XMLInputFactory2;
+import org.codehaus.stax2.ri.Stax2WriterAdapter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Immutable, thread-safe pair of pre-built {@link ObjectReader}/{@link ObjectWriter} for {@link XmlNode}.
+ * Building an {@link XmlMapper} runs module discovery and starts with cold serializer caches, so codecs share one
+ * mapper and derive variants through the {@code with...} methods instead.
+ */
+public final class XmlNodeCodec {
+    private static final XmlNodeCodec DEFAULT = create(XmlSymbolTable.getDefault());
+    static final XmlNodeCodec DEFAULT_PRETTY = DEFAULT.withPrettyPrinting(true);
+    // Fewest root children per parallel serialization task
+    static final int MIN_PARALLEL_BATCH = 16;
+
+    private final XmlMapper xmlMapper;
+    private final XmlNode.XmlNodeDeserializer deserializer;
+    private final String rootName;
+    private final boolean prettyPrinting;
+    private final XmlProjection projection;
+    private final XmlNodePool pool;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final XmlNodeStaxWriter staxWriter;
+
+    private XmlNodeCodec(XmlMapper xmlMapper, XmlNode.XmlNodeDeserializer deserializer, String rootName,
+                         boolean prettyPrinting, XmlProjection projection, XmlNodePool pool) {
+        this.xmlMapper = xmlMapper;
+        this.deserializer = deserializer;
+        this.rootName = rootName;
+        this.prettyPrinting = prettyPrinting;
+        this.projection = projection;
+        this.pool = pool;
+        ObjectReader r = xmlMapper.readerFor(XmlNode.class);
+        if (projection != null)
+            r = r.withAttribute(XmlNode.XmlNodeDeserializer.PROJECTION, projection);
+        if (pool != null)
+            r = r.withAttribute(XmlNode.XmlNodeDeserializer.POOL, pool);
+        this.reader = r;
+        ObjectWriter w = xmlMapper.writerFor(XmlNode.class);
+        if (rootName != null)
+            w = w.withRootName(rootName);
+        if (prettyPrinting)
+            w = w.withDefaultPrettyPrinter();
+        this.writer = w;
+        this.staxWriter = new XmlNodeStaxWriter(xmlMapper, rootName);
+    }
+
+    public static XmlNodeCodec getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a codec around a caller-configured mapper; {@link XmlNodeModule} is registered on it if missing.
+     */
+    public static XmlNodeCodec of(XmlMapper xmlMapper) {
+        XmlNodeModule module = new XmlNodeModule();
+        if (!xmlMapper.getRegisteredModuleIds().contains(XmlNodeModule.class.getName()))
+            xmlMapper.registerModule(module);
+        return new XmlNodeCodec(xmlMapper, module.getDeserializer(), null, false, null, null);
+    }
+
+    /**
+     * Creates a codec with its own mapper whose deserializer canonicalizes names and values through {@code symbols}.
+     */
+    public static XmlNodeCodec create(XmlSymbolTable symbols) {
+        XmlNodeModule module = new XmlNodeModule(symbols);
+        return new XmlNodeCodec(newXmlMapper(module), module.getDeserializer(), null, false, null, null);
+    }
+
+    private static XmlMapper newXmlMapper(XmlNodeModule module) {
+        XmlFactory xmlFactory = XmlFactory.builder().xmlInputFactory(new WstxInputFactory()).build();
+        // Report CDATA as its own event so that CDATANode survives a parse/write round trip. XmlFactory turns
+        // coalescing on while initializing, so this has to happen after the factory is built.
+        XMLInputFactory inputFactory = xmlFactory.getXMLInputFactory();
+        inputFactory.setProperty(XMLInputFactory2.P_REPORT_CDATA, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        return XmlMapper.builder(xmlFactory)
+                .findAndAddModules()
+                .addModule(module)
+                .build();
+    }
+
+    public XmlNodeCodec withRootName(String rootName) {
+        if (rootName == null ? this.rootName == null : rootName.equals(this.rootName))
+            return this;
+        return new XmlNodeCodec(this.xmlMapper, this.deserializer, rootName, this.prettyPrinting, this.projection,
+                this.pool);
+    }
+
+    public XmlNodeCodec withPrettyPrinting(boolean prettyPrinting) {
+        if (prettyPrinting == this.prettyPrinting)
+            return this;
+        return new XmlNodeCodec(this.xmlMapper, this.deserializer, this.rootName, prettyPrinting, this.projection,
+                this.pool);
+    }
+
+    /**
+     * Returns a codec whose {@code read} methods build only the elements matched by {@code paths} (evaluated from
+     * the root, as {@link XmlPath#select} would) with their subtrees, plus the ancestors leading to them with their
+     * attributes. Everything else is skipped by the parser without creating nodes or strings. With no paths, whole
+     * documents are read again. {@code readParallel} and {@code readLazy} parse sequentially when projecting;
+     * {@code readRecords} and {@link #newAsyncParser()} always build whole records.
+     */
+    public XmlNodeCodec withProjection(XmlPath... paths) {
+        if (paths.length == 0 && this.projection == null)
+            return this;
+        return new XmlNodeCodec(this.xmlMapper, this.deserializer, this.rootName, this.prettyPrinting,
+                paths.length == 0 ? null : new XmlProjection(paths), this.pool);
+    }
+
+    /**
+     * Returns a codec whose {@code read} methods take the nodes of parsed trees from {@code pool}, or create them as
+     * usual if it is null. Hand each tree back with {@link XmlNodePool#release(XmlNode)} once it is no longer used.
+     * {@code readParallel}, {@code readLazy}, {@code readRecords} and {@link #newAsyncParser()} do not use the pool.
+     */
+    public XmlNodeCodec withPool(XmlNodePool pool) {
+        if (pool == this.pool)
+            return this;
+        return new XmlNodeCodec(this.xmlMapper, this.deserializer, this.rootName, this.prettyPrinting, this.projection,
+                pool);
+    }
+
+    public XmlMapper getXmlMapper() {
+        return this.xmlMapper;
+    }
+
+    public XmlSymbolTable getSymbolTable() {
+        return this.deserializer.getSymbols();
+    }
+
+    public ObjectReader getReader() {
+        return this.reader;
+    }
+
+    public ObjectWriter getWriter() {
+        return this.writer;
+    }
+
+    public XmlNodeStaxWriter getStaxWriter() {
+        return this.staxWriter;
+    }
+
+    public String getRootName() {
+        return this.rootName;
+    }
+
+    public boolean isPrettyPrinting() {
+        return this.prettyPrinting;
+    }
+
+    public XmlNode read(String xml) throws JsonProcessingException {
+        return this.reader.readValue(xml);
+    }
+
+    public XmlNode read(Reader xml) throws IOException {
+        return this.reader.readValue(xml);
+    }
+
+    public XmlNode read(InputStream xml) throws IOException {
+        return this.reader.readValue(xml);
+    }
+
+    /**
+     * Resets {@code root} and reads the document into it, so that a long-lived root is reused instead of a new one
+     * being created per document. With a {@link #withPool(XmlNodePool) pool}, the former descendants of the root are
+     * released to it first.
+     */
+    public XmlNode readInto(String xml, XmlNode root) throws JsonProcessingException {
+        return this.readerFor(root).readValue(xml);
+    }
+
+    public XmlNode readInto(InputStream xml, XmlNode root) throws IOException {
+        return this.readerFor(root).readValue(xml);
+    }
+
+    private ObjectReader readerFor(XmlNode root) {
+        if (this.pool != null)
+            this.pool.releaseContent(root);
+        else
+            root.reset();
+        return this.reader.withValueToUpdate(root);
+    }
+
+    /**
+     * Parses the children of the root concurrently on the common pool; see
+     * {@link #readParallel(String, int, ForkJoinPool)}.
+     */
+    public XmlNode readParallel(String xml) throws IOException {
+        return this.readParallel(xml, 1, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a large document using several cores. The elements at {@code splitDepth} (1 for the children of the root)
+     * are located by a quick scan and parsed concurrently on {@code pool}. The result is identical to
+     * {@link #read(String)}. Small documents, documents with a DOCTYPE and documents with fewer than two elements at that
+     * depth are parsed sequentially.
+     */
+    public XmlNode readParallel(String xml, int splitDepth, ForkJoinPool pool) throws IOException {
+        if (splitDepth < 1)
+            throw new IllegalArgumentException(String.format("Split depth must be at least 1, got %d", splitDepth));
+        if (this.projection != null)
+            return this.read(xml);
+        XmlNode node;
+        try {
+            node = new ParallelXmlParser(xml, splitDepth, ParallelXmlParser.MIN_BATCH_CHARS,
+                    this.xmlMapper.getFactory().getXMLInputFactory(), this.xmlMapper.getNodeFactory(), this.deserializer)
+                    .parse(pool);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return node != null ? node : this.read(xml);
+    }
+
+    /**
+     * Parses {@code length} bytes of {@code xml} starting at {@code offset} in place, without copying them.
+     */
+    public XmlNode read(byte[] xml, int offset, int length) throws IOException {
+        return this.reader.readValue(xml, offset, length);
+    }
+
+    /**
+     * Parses the remaining bytes of {@code xml} without changing its position. Heap buffers are parsed in place;
+     * direct and mapped buffers are copied straight into the parser's input buffer.
+     */
+    public XmlNode read(ByteBuffer xml) throws IOException {
+        if (xml.hasArray())
+            return this.read(xml.array(), xml.arrayOffset() + xml.position(), xml.remaining());
+        return this.reader.readValue(new ByteBufferInputStream(xml.duplicate()));
+    }
+
+    /**
+     * Parses a file through read-only memory mappings of it instead of buffered reads.
+     */
+    public XmlNode read(Path xml) throws IOException {
+        try (InputStream in = map(xml)) {
+            return this.reader.readValue(in);
+        }
+    }
+
+    private static InputStream map(Path file) throws IOException {
+        return new ByteBufferInputStream(FileChannel.open(file, StandardOpenOption.READ), ByteBufferInputStream.REGION_SIZE);
+    }
+
+    /**
+     * Parses only the root element up front; each child subtree is parsed the first time it is accessed and is
+     * written straight from {@code xml} if it never is. The returned tree retains {@code xml}. Documents with a
+     * DOCTYPE are parsed in full.
+     */
+    public XmlNode readLazy(String xml) throws IOException {
+        if (this.projection != null)
+            return this.read(xml);
+        try {
+            return LazyChildNode.parse(xml, this.xmlMapper.getFactory().getXMLInputFactory(), this.xmlMapper.getNodeFactory(),
+                    this.deserializer);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public XmlRecordReader readRecords(Reader xml, String path) throws IOException {
+        try {
+            XMLStreamReader streamReader = this.xmlMapper.getFactory().getXMLInputFactory().createXMLStreamReader(xml);
+            return new XmlRecordReader(streamReader, path, this.xmlMapper.getNodeFactory(), this.deserializer, xml);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public XmlRecordReader readRecords(InputStream xml, String path) throws IOException {
+        try {
+            XMLStreamReader streamReader = this.xmlMapper.getFactory().getXMLInputFactory().createXMLStreamReader(xml);
+            return new XmlRecordReader(streamReader, path, this.xmlMapper.getNodeFactory(), this.deserializer, xml);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Creates a push parser that builds one document from byte chunks as they arrive; needs {@code aalto-xml}.
+     */
+    public XmlNodeAsyncParser newAsyncParser() {
+        return new XmlNodeAsyncParser(this.xmlMapper.getNodeFactory(), this.deserializer);
+    }
+
+    /**
+     * Splits a memory-mapped file into records; see {@link #read(Path)}. Closing the reader closes the file.
+     */
+    public XmlRecordReader readRecords(Path xml, String path) throws IOException {
+        InputStream in = map(xml);
+        try {
+            XMLStreamReader streamReader = this.xmlMapper.getFactory().getXMLInputFactory().createXMLStreamReader(in);
+            return new XmlRecordReader(streamReader, path, this.xmlMapper.getNodeFactory(), this.deserializer, in);
+        } catch (XMLStreamException e) {
+            in.close();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads one document written by {@link #writeBinary(XmlNode, OutputStream)}. Use {@link XmlNodeBinaryReader}
+     * directly for streams holding several documents.
+     */
+    public XmlNode readBinary(InputStream in) throws IOException {
+        XmlNode node = new XmlNodeBinaryReader(in, this.xmlMapper.getNodeFactory()).read();
+        if (node == null)
+            throw new IOException("No document in XmlNode binary stream");
+        return node;
+    }
+
+    public void writeBinary(XmlNode node, OutputStream out) throws IOException {
+        XmlNodeBinaryWriter writer = new XmlNodeBinaryWriter(out);
+        writer.write(node);
+        writer.flush();
+    }
+
+    public String write(XmlNode node) throws JsonProcessingException {
+        return this.writer.writeValueAsString(node);
+    }
+
+    public void write(XmlNode node, Writer out) throws IOException {
+        this.writer.writeValue(out, node);
+    }
+
+    public void write(XmlNode node, OutputStream out) throws IOException {
+        this.writer.writeValue(out, node);
+    }
+
+    /**
+     * Same output as {@link #write(XmlNode)}, produced by {@link XmlNodeStaxWriter} instead of the Jackson
+     * serializer. Falls back to {@link #write(XmlNode)} when pretty printing or an output feature the direct writer
+     * does not reproduce (XML declaration, root unwrapping, schema-conforming floats) is enabled.
+     */
+    public String writeDirect(XmlNode node) throws IOException {
+        if (!this.canWriteDirect())
+            return this.write(node);
+        StringWriter out = new StringWriter();
+        this.writeDirect(node, out);
+        return out.toString();
+    }
+
+    public void writeDirect(XmlNode node, Writer out) throws IOException {
+        if (!this.canWriteDirect()) {
+            this.write(node, out);
+            return;
+        }
+        try {
+            this.writeDirect(node, this.xmlMapper.getFactory().getXMLOutputFactory().createXMLStreamWriter(out));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void writeDirect(XmlNode node, OutputStream out) throws IOException {
+        if (!this.canWriteDirect()) {
+            this.write(node, out);
+            return;
+        }
+        try {
+            this.writeDirect(node, this.xmlMapper.getFactory().getXMLOutputFactory().createXMLStreamWriter(out, "UTF-8"));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Compiles {@code template}, a tree holding {@link XmlTemplate#hole(String) holes}, into a template that renders
+     * the same markup as {@link #write(XmlNode, OutputStream)} would for the filled-in tree.
+     */
+    public XmlTemplate compileTemplate(XmlNode template) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writeDirect(template, out);
+        return new XmlTemplate(out.toByteArray(), this.staxWriter);
+    }
+
+    /**
+     * Writes the same bytes as {@link #writeDirect(XmlNode, OutputStream)}, rendering runs of the root's children
+     * concurrently on the common pool; see {@link #writeParallel(XmlNode, OutputStream, ForkJoinPool)}.
+     */
+    public void writeParallel(XmlNode node, OutputStream out) throws IOException {
+        this.writeParallel(node, out, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Writes the same bytes as {@link #writeDirect(XmlNode, OutputStream)}. Runs of the root's children are rendered
+     * concurrently on {@code pool} into separate buffers and copied to {@code out} in order, which pays off for roots
+     * with many sibling subtrees. Roots with few children are written on the calling thread, and configurations that
+     * {@code writeDirect} cannot handle fall back to {@link #write(XmlNode, OutputStream)}.
+     */
+    public void writeParallel(XmlNode node, OutputStream out, ForkJoinPool pool) throws IOException {
+        if (!this.canWriteDirect()) {
+            this.write(node, out);
+            return;
+        }
+        try {
+            XMLStreamWriter streamWriter = this.xmlMapper.getFactory().getXMLOutputFactory().createXMLStreamWriter(out, "UTF-8");
+            this.staxWriter.writeParallel(node, streamWriter, out, pool, MIN_PARALLEL_BATCH);
+            this.close(streamWriter);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeDirect(XmlNode node, XMLStreamWriter streamWriter) throws IOException, XMLStreamException {
+        this.staxWriter.write(node, streamWriter);
+        this.close(streamWriter);
+    }
+
+    private void close(XMLStreamWriter streamWriter) throws XMLStreamException {
+        // Mirror what closing the generator does on the ObjectWriter path
+        if (this.xmlMapper.getFactory().isEnabled(JsonGenerator.Feature.AUTO_CLOSE_TARGET))
+            Stax2WriterAdapter.wrapIfNecessary(streamWriter).closeCompletely();
+        else
+            streamWriter.close();
+    }
+
+    private boolean canWriteDirect() {
+        XmlFactory factory = this.xmlMapper.getFactory();
+        return !this.prettyPrinting
+                && !this.xmlMapper.isEnabled(SerializationFeature.INDENT_OUTPUT)
+                && !factory.isEnabled(ToXmlGenerator.Feature.WRITE_XML_DECLARATION)
+                && !factory.isEnabled(ToXmlGenerator.Feature.WRITE_XML_1_1)
+                && !factory.isEnabled(ToXmlGenerator.Feature.UNWRAP_ROOT_OBJECT_NODE)
+                && !factory.isEnabled(ToXmlGenerator.Feature.WRITE_XML_SCHEMA_CONFORMING_FLOATS);
+    }
+}
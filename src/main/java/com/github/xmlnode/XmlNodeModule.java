@@ -3,7 +3,22 @@ package com.github.xmlnode;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 public class XmlNodeModule extends SimpleModule {
+    private final XmlNode.XmlNodeDeserializer deserializer;
+
     public XmlNodeModule() {
-        this.addDeserializer(XmlNode.class, new XmlNode.XmlNodeDeserializer());
+        this(XmlSymbolTable.getDefault());
+    }
+
+    public XmlNodeModule(XmlSymbolTable symbols) {
+        this.deserializer = new XmlNode.XmlNodeDeserializer(symbols);
+        this.addDeserializer(XmlNode.class, this.deserializer);
+    }
+
+    public XmlSymbolTable getSymbolTable() {
+        return this.deserializer.getSymbols();
+    }
+
+    XmlNode.XmlNodeDeserializer getDeserializer() {
+        return this.deserializer;
     }
 }
@@ -0,0 +1,122 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.util.Arrays;
+
+/**
+ * Recycles {@link XmlNode}s, with the child lists and maps they have grown, between documents, so that services
+ * parsing and dropping many documents allocate far fewer objects per document. Each thread keeps its own bounded
+ * stack of {@link XmlNode#reset() reset} nodes, so neither {@link #acquire()} nor {@link #release(XmlNode)} locks;
+ * nodes released on one thread are reused by the next acquisitions on that thread.
+ * <p>
+ * A released tree must no longer be used, nor any node taken from it, since its nodes are handed out again. Pass
+ * the pool to {@link XmlNodeCodec#withPool(XmlNodePool)} to have parsed trees built from it.
+ */
+public final class XmlNodePool {
+    private final JsonNodeFactory nodeFactory;
+    private final int maxNodesPerThread;
+    private final ThreadLocal<Stack> stacks = ThreadLocal.withInitial(Stack::new);
+
+    public XmlNodePool(int maxNodesPerThread) {
+        this(JsonNodeFactory.instance, maxNodesPerThread);
+    }
+
+    /**
+     * @param nodeFactory       the factory of the nodes the pool creates; nodes with another factory are not recycled
+     * @param maxNodesPerThread how many idle nodes each thread may keep
+     */
+    public XmlNodePool(JsonNodeFactory nodeFactory, int maxNodesPerThread) {
+        if (maxNodesPerThread < 0)
+            throw new IllegalArgumentException(String.format("Pool size must not be negative, got %d", maxNodesPerThread));
+        this.nodeFactory = nodeFactory;
+        this.maxNodesPerThread = maxNodesPerThread;
+    }
+
+    /**
+     * @return an empty node, recycled if the calling thread has one
+     */
+    public XmlNode acquire() {
+        Stack stack = this.stacks.get();
+        if (stack.size == 0)
+            return new XmlNode(this.nodeFactory);
+        XmlNode node = stack.nodes[--stack.size];
+        stack.nodes[stack.size] = null;
+        node._pooled = false;
+        return node;
+    }
+
+    /**
+     * Resets {@code root} and every XmlNode below it and keeps them for reuse, as far as the calling thread's stack
+     * has room. Frozen nodes, which may be shared, and the content a {@link XmlNode#copyOnWrite()} copy still shares
+     * with its source are left alone.
+     */
+    public void release(XmlNode root) {
+        this.recycle(root, false);
+    }
+
+    // Recycles the descendants of node and resets it, keeping node itself out of the pool
+    void releaseContent(XmlNode node) {
+        this.recycle(node, true);
+    }
+
+    /**
+     * @return how many idle nodes the calling thread holds
+     */
+    public int size() {
+        return this.stacks.get().size;
+    }
+
+    private boolean recyclable(XmlNode node) {
+        return !node.isFrozen() && !node._pooled && node.nodeFactory() == this.nodeFactory;
+    }
+
+    private void recycle(XmlNode root, boolean keepRoot) {
+        if (!this.recyclable(root)) {
+            if (keepRoot)
+                root.reset();
+            return;
+        }
+        Stack stack = this.stacks.get();
+        XmlNode[] pending = stack.pending;
+        int count = 0;
+        // Marked as soon as they are seen, so that a node reachable twice is recycled once
+        root._pooled = true;
+        pending[count++] = root;
+        while (count > 0) {
+            XmlNode node = pending[--count];
+            pending[count] = null;
+            for (ChildNode child : node.ownedChildren()) {
+                if (child instanceof LazyChildNode && !((LazyChildNode) child).isMaterialized())
+                    continue;
+                JsonNode childNode = child.getNode();
+                if (childNode instanceof XmlNode && this.recyclable((XmlNode) childNode)) {
+                    if (count == pending.length)
+                        stack.pending = pending = Arrays.copyOf(pending, count << 1);
+                    ((XmlNode) childNode)._pooled = true;
+                    pending[count++] = (XmlNode) childNode;
+                }
+            }
+            node.reset();
+            if (node == root && keepRoot || !stack.offer(node, this.maxNodesPerThread))
+                node._pooled = false;
+        }
+    }
+
+    private static final class Stack {
+        private XmlNode[] nodes = new XmlNode[64];
+        private int size;
+        // Scratch for the tree walk in recycle
+        private XmlNode[] pending = new XmlNode[64];
+
+        boolean offer(XmlNode node, int max) {
+            if (this.size >= max)
+                return false;
+            if (this.size == this.nodes.length)
+                this.nodes = Arrays.copyOf(this.nodes, Math.min(max, this.size << 1));
+            this.nodes[this.size++] = node;
+            return true;
+        }
+    }
+}
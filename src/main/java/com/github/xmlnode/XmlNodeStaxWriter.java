@@ -0,0 +1,330 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.FloatNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.node.ShortNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import com.fasterxml.jackson.dataformat.xml.util.StaxUtil;
+import com.fasterxml.jackson.dataformat.xml.util.XmlRootNameLookup;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.codehaus.stax2.ri.Stax2WriterAdapter;
+import org.codehaus.stax2.typed.Base64Variant;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Writes an {@link XmlNode} tree straight to a StAX writer, issuing the same {@link XMLStreamWriter2} calls that
+ * {@link XmlNode#serialize} makes through {@link ToXmlGenerator}, so the output is identical but skips Jackson's
+ * per-value field name handling and serializer lookups. Scalar values and the attribute types {@code put}/{@code
+ * setValue} produce are written directly; anything else (POJOs, raw values) is handed to a {@link ToXmlGenerator}
+ * bound to the same stream writer. Children that are JSON objects or arrays but not XmlNodes are rejected by both
+ * paths. The tree is walked without recursion. Instances are immutable and thread-safe; see
+ * {@link XmlNodeCodec#writeDirect(XmlNode)}.
+ */
+public final class XmlNodeStaxWriter {
+    private final XmlMapper xmlMapper;
+    private final QName rootName;
+
+    XmlNodeStaxWriter(XmlMapper xmlMapper, String rootName) {
+        this.xmlMapper = xmlMapper;
+        this.rootName = rootName != null ? new QName(rootName)
+                : new XmlRootNameLookup().findRootName(XmlNode.class, xmlMapper.getSerializationConfig());
+    }
+
+    public String getRootName() {
+        return this.rootName.getLocalPart();
+    }
+
+    /**
+     * Writes {@code node} as the root element. The writer is neither flushed nor closed.
+     */
+    public void write(XmlNode node, XMLStreamWriter out) throws IOException {
+        try {
+            new Output(Stax2WriterAdapter.wrapIfNecessary(out)).writeTree(node);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes {@code node} like {@link #write}, except that runs of the root's children are rendered concurrently on
+     * {@code pool} into separate UTF-8 buffers, which are copied to {@code target} in document order as they
+     * complete. {@code out} must be a UTF-8 writer on {@code target}. Names are written with their prefixes
+     * resolved from the parent alone, so a run renders the same in isolation as in place.
+     */
+    void writeParallel(XmlNode node, XMLStreamWriter out, OutputStream target, ForkJoinPool pool, int minBatchChildren)
+            throws IOException {
+        int childCount = node._children.size();
+        if (childCount < 2 * minBatchChildren) {
+            this.write(node, out);
+            return;
+        }
+        int batchSize = Math.max(minBatchChildren, childCount / (pool.getParallelism() * 4));
+        List<Fragment> fragments = new ArrayList<>();
+        for (int from = 0; from < childCount; from += batchSize)
+            fragments.add(new Fragment(node, from, Math.min(childCount, from + batchSize)));
+        for (Fragment fragment : fragments)
+            pool.execute(fragment);
+        try {
+            XMLStreamWriter2 writer = Stax2WriterAdapter.wrapIfNecessary(out);
+            writer.writeStartElement(this.rootName.getNamespaceURI(), this.rootName.getLocalPart());
+            new Output(writer).writeHead(node);
+            boolean started = false;
+            for (Fragment fragment : fragments) {
+                Buffer buffer = fragment.join();
+                if (buffer.isEmpty())
+                    continue;
+                if (!started) {
+                    // Close the start tag and hand the target over for the children. Children that all write
+                    // nothing leave the root an empty element, as on the sequential path.
+                    writer.writeCharacters("");
+                    writer.flush();
+                    started = true;
+                }
+                buffer.copyTo(target);
+            }
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Fragment fragment : fragments)
+                fragment.cancel(false);
+        }
+    }
+
+    /**
+     * Writes the children of {@code node}, but not the node itself, as UTF-8 with prefixes resolved from the node
+     * alone; used for {@link XmlTemplate} holes.
+     */
+    void writeContent(XmlNode node, OutputStream out) throws IOException {
+        try {
+            new Fragment(node, 0, node._children.size()).compute().copyTo(out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Children [from, to) of parent rendered as UTF-8, written inside a throwaway element so that the writer is in
+    // the same state as it would be in place
+    private final class Fragment extends RecursiveTask<Buffer> {
+        private final XmlNode parent;
+        private final int from;
+        private final int to;
+
+        private Fragment(XmlNode parent, int from, int to) {
+            this.parent = parent;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Buffer compute() {
+            Buffer buffer = new Buffer();
+            try {
+                XMLStreamWriter2 writer = Stax2WriterAdapter.wrapIfNecessary(
+                        xmlMapper.getFactory().getXMLOutputFactory().createXMLStreamWriter(buffer, "UTF-8"));
+                writer.writeStartElement("", "fragment");
+                writer.writeCharacters("");
+                writer.flush();
+                buffer.start = buffer.size();
+                new Output(writer).writeChildren(this.parent, this.from, this.to);
+                writer.flush();
+                return buffer;
+            } catch (XMLStreamException e) {
+                throw new UncheckedIOException(new IOException(e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        private int start;
+
+        private Buffer() {
+            super(8192);
+        }
+
+        boolean isEmpty() {
+            return this.count == this.start;
+        }
+
+        // Everything after the throwaway start tag
+        void copyTo(OutputStream out) throws IOException {
+            out.write(this.buf, this.start, this.count - this.start);
+        }
+    }
+
+    private final class Output {
+        private final XMLStreamWriter2 writer;
+        private final boolean bigDecimalAsPlain;
+        private final Base64Variant base64Variant;
+        private ToXmlGenerator fallback;
+
+        Output(XMLStreamWriter2 writer) {
+            this.writer = writer;
+            this.bigDecimalAsPlain = xmlMapper.getFactory().isEnabled(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN);
+            this.base64Variant = StaxUtil.toStax2Base64Variant(xmlMapper.getSerializationConfig().getBase64Variant());
+        }
+
+        void writeTree(XmlNode root) throws XMLStreamException, IOException {
+            this.writer.writeStartElement(rootName.getNamespaceURI(), rootName.getLocalPart());
+            this.writeHead(root);
+            this.writeChildren(root, 0, root._children.size());
+            this.writer.writeEndElement();
+        }
+
+        // Writes children [from, to) of parent, and everything below them
+        void writeChildren(XmlNode parent, int from, int to) throws XMLStreamException, IOException {
+            XmlNode[] nodes = new XmlNode[16];
+            int[] positions = new int[16];
+            int depth = 0;
+            nodes[0] = parent;
+            positions[0] = from;
+            while (true) {
+                XmlNode node = nodes[depth];
+                List<ChildNode> children = node._children;
+                if (positions[depth] == (depth == 0 ? to : children.size())) {
+                    if (depth == 0)
+                        return;
+                    this.writer.writeEndElement();
+                    nodes[depth--] = null;
+                    continue;
+                }
+                ChildNode entry = children.get(positions[depth]++);
+                if (entry instanceof LazyChildNode && !((LazyChildNode) entry).isMaterialized()) {
+                    ((LazyChildNode) entry).writeRaw(this.writer);
+                    continue;
+                }
+                JsonNode entryNode = entry.getNode();
+                if (entryNode instanceof XmlNode) {
+                    this.writer.writeStartElement("", elementName(node, entry.getAttributeName()));
+                    this.writeHead((XmlNode) entryNode);
+                    if (++depth == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, depth << 1);
+                        positions = Arrays.copyOf(positions, depth << 1);
+                    }
+                    nodes[depth] = (XmlNode) entryNode;
+                    positions[depth] = 0;
+                } else if (entryNode instanceof POJONode) {
+                    xmlMapper.writer().withRootName(elementName(node, entry.getAttributeName()))
+                            .writeValue(this.fallback(), entryNode);
+                } else if (entryNode.isContainerNode()) {
+                    throw XmlNode.unsupportedContainer(entry.getAttributeName(), entryNode, this.fallback);
+                } else this.writeValue(entryNode);
+            }
+        }
+
+        private void writeHead(XmlNode node) throws XMLStreamException, IOException {
+            for (Map.Entry<String, String> entry : node._namespacePrefixURIMapping.entrySet()) {
+                if (entry.getValue() != null)
+                    this.writer.writeAttribute("", "xmlns:" + entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, Object> entry : node._attributes.entrySet()) {
+                String prefix = node._attributePrefixMapping.get(entry.getKey());
+                this.writeAttribute(prefix != null ? prefix + ':' + entry.getKey() : entry.getKey(), entry.getValue());
+            }
+        }
+
+        private void writeAttribute(String name, Object value) throws XMLStreamException, IOException {
+            if (value == null)
+                return;
+            if (value instanceof String)
+                this.writer.writeAttribute("", name, (String) value);
+            else if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+                this.writer.writeIntAttribute(null, "", name, ((Number) value).intValue());
+            else if (value instanceof Long)
+                this.writer.writeLongAttribute(null, "", name, (Long) value);
+            else if (value instanceof Double)
+                this.writer.writeDoubleAttribute(null, "", name, (Double) value);
+            else if (value instanceof Float)
+                this.writer.writeFloatAttribute(null, "", name, (Float) value);
+            else if (value instanceof Boolean)
+                this.writer.writeBooleanAttribute(null, "", name, (Boolean) value);
+            else if (value instanceof BigInteger)
+                this.writer.writeIntegerAttribute(null, "", name, (BigInteger) value);
+            else if (value instanceof BigDecimal) {
+                if (this.bigDecimalAsPlain)
+                    this.writer.writeAttribute("", "", name, ((BigDecimal) value).toPlainString());
+                else
+                    this.writer.writeDecimalAttribute("", "", name, (BigDecimal) value);
+            } else {
+                ToXmlGenerator generator = this.fallback();
+                generator.setNextIsAttribute(true);
+                xmlMapper.writer().withRootName(name).writeValue(generator, value);
+                generator.setNextIsAttribute(false);
+            }
+        }
+
+        private void writeValue(JsonNode value) throws XMLStreamException, IOException {
+            if (value instanceof CDATANode)
+                this.writer.writeCData(value.textValue());
+            else if (value instanceof TextNode)
+                this.writer.writeCharacters(value.textValue());
+            else if (value instanceof IntNode || value instanceof ShortNode)
+                this.writer.writeInt(value.intValue());
+            else if (value instanceof LongNode)
+                this.writer.writeLong(value.longValue());
+            else if (value instanceof DoubleNode)
+                this.writer.writeDouble(value.doubleValue());
+            else if (value instanceof FloatNode)
+                this.writer.writeFloat(value.floatValue());
+            else if (value instanceof BigIntegerNode)
+                this.writer.writeInteger(value.bigIntegerValue());
+            else if (value instanceof DecimalNode) {
+                if (this.bigDecimalAsPlain)
+                    this.writer.writeCharacters(value.decimalValue().toPlainString());
+                else
+                    this.writer.writeDecimal(value.decimalValue());
+            } else if (value instanceof BooleanNode)
+                this.writer.writeBoolean(value.booleanValue());
+            else if (value instanceof BinaryNode) {
+                byte[] data = value.binaryValue();
+                this.writer.writeBinary(this.base64Variant, data, 0, data.length);
+            } else if (!(value instanceof NullNode)) {
+                ToXmlGenerator generator = this.fallback();
+                generator.setNextIsUnwrapped(true);
+                xmlMapper.writeValue(generator, value);
+            }
+        }
+
+        private ToXmlGenerator fallback() throws IOException {
+            if (this.fallback == null)
+                this.fallback = xmlMapper.getFactory().createGenerator(this.writer);
+            return this.fallback;
+        }
+    }
+
+    private static String elementName(XmlNode parent, String name) {
+        String prefix = parent._elementPrefixMapping.get(name);
+        return prefix != null ? prefix + ':' + name : name;
+    }
+}
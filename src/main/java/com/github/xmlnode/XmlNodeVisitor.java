@@ -0,0 +1,36 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Callbacks for {@link XmlNode#accept(XmlNodeVisitor)}. Every method does nothing by default, so visitors override
+ * only the events they need. Prefixes are {@code null} for names without one.
+ */
+public interface XmlNodeVisitor {
+    /**
+     * Called before the attributes and content of a child element.
+     *
+     * @return {@code false} to skip the element's attributes and content; {@link #leave} is then not called for it
+     */
+    default boolean enter(String name, String prefix, XmlNode element) {
+        return true;
+    }
+
+    /**
+     * Called for each attribute of the visited node and of every entered element, right after it is entered.
+     */
+    default void attribute(String name, String prefix, Object value) {
+    }
+
+    /**
+     * Called for every child that is not an XmlNode: text, CDATA, numbers and other values, in document order.
+     */
+    default void text(JsonNode value) {
+    }
+
+    /**
+     * Called after the content of an element entered with {@link #enter}.
+     */
+    default void leave(String name, String prefix, XmlNode element) {
+    }
+}
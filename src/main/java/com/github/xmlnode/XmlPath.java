@@ -0,0 +1,495 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled path query over {@link XmlNode} trees, in a small subset of XPath:
+ * <pre>
+ * path      := ['/' | '//'] step (('/' | '//') step)*
+ * step      := ('*' | name | prefix ':' name) predicate*
+ * predicate := '[' n ']' | '[' '@' attribute ']' | '[' '@' attribute '=' ('"' value '"' | "'" value "'") ']'
+ * </pre>
+ * The node a query is evaluated on has no name of its own, so paths start at its children: {@code Body/Order} and
+ * {@code /Body/Order} are the same query, while {@code //Order} searches every descendant. As in XPath, {@code [n]}
+ * counts from 1 among the siblings that passed the step's earlier tests, and predicates apply left to right.
+ * Unprefixed steps match local names whatever their prefix. A prefixed step or attribute matches the same prefix,
+ * or, when the prefix was bound at compile time, any prefix that {@link XmlNode#getNamespaceURI} resolves to the
+ * bound URI on the element's ancestors. Results are in document order without duplicates.
+ * <p>
+ * Queries are immutable and thread-safe, so compile each once and keep it. Child steps by name use the same child
+ * lookup as {@link XmlNode#get(String)}, which indexes wide nodes and scans the rest.
+ */
+public final class XmlPath {
+    private final String expression;
+    private final Step[] steps;
+    private final boolean resolvesNamespaces;
+
+    private XmlPath(String expression, Step[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+        boolean resolves = false;
+        for (Step step : steps)
+            resolves |= step.resolvesNamespaces();
+        this.resolvesNamespaces = resolves;
+    }
+
+    public static XmlPath compile(String expression) {
+        return compile(expression, Collections.emptyMap());
+    }
+
+    /**
+     * @param namespaces URIs for the prefixes used in {@code expression}; unbound prefixes are compared literally
+     */
+    public static XmlPath compile(String expression, Map<String, String> namespaces) {
+        return new XmlPath(expression, new Parser(expression, namespaces).parse());
+    }
+
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * @return the elements matched below {@code context}, in document order
+     */
+    public List<XmlNode> select(XmlNode context) {
+        return this.select(context, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the first element matched below {@code context} in document order, or null
+     */
+    public XmlNode selectFirst(XmlNode context) {
+        List<XmlNode> nodes = this.select(context, 1);
+        return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    // The last step stops after limit matches, which are the first in document order unless earlier matches nested
+    private List<XmlNode> select(XmlNode context, int limit) {
+        List<Match> current = Collections.singletonList(new Match(context, this.resolvesNamespaces ? new Scope(context, null) : null));
+        boolean nested = false;
+        for (int i = 0; i < this.steps.length && !current.isEmpty(); i++) {
+            Step step = this.steps[i];
+            int stepLimit = i == this.steps.length - 1 && !nested ? limit : Integer.MAX_VALUE;
+            List<Match> next = new ArrayList<>();
+            if (step.descendant) {
+                Set<XmlNode> visited = current.size() > 1 ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+                for (Match match : current)
+                    nested |= this.selectDescendants(step, match, next, visited, stepLimit) && i < this.steps.length - 1;
+            } else {
+                for (Match match : current)
+                    this.selectChildren(step, match, next, stepLimit);
+            }
+            current = next;
+        }
+        List<XmlNode> nodes = new ArrayList<>(current.size());
+        for (Match match : current)
+            nodes.add(match.node);
+        // Steps after nested matches visit an outer match's children before an inner one's
+        return nested ? documentOrder(context, nodes) : nodes;
+    }
+
+    private void selectChildren(Step step, Match match, List<Match> out, int limit) {
+        XmlNode parent = match.node;
+        List<ChildNode> candidates = step.name != null ? parent.children(step.name) : parent.childList();
+        int[] counters = step.counters();
+        for (ChildNode child : candidates) {
+            if (out.size() >= limit)
+                return;
+            JsonNode node = child.getNode();
+            if (node instanceof XmlNode && step.matches(parent, child.getAttributeName(), (XmlNode) node, match.scope, counters))
+                out.add(new Match((XmlNode) node, match.scope != null ? new Scope((XmlNode) node, match.scope) : null));
+        }
+    }
+
+    // Appends the step's matches among all descendants of match in document order; returns true if one match lies
+    // inside another
+    private boolean selectDescendants(Step step, Match match, List<Match> out, Set<XmlNode> visited, int limit) {
+        if (out.size() >= limit || visited != null && visited.contains(match.node))
+            // Inside the subtree of an earlier match, whose walk has already covered it
+            return false;
+        XmlNode[] nodes = new XmlNode[16];
+        int[] positions = new int[16];
+        int[][] counters = new int[16][];
+        Scope[] scopes = match.scope != null ? new Scope[16] : null;
+        boolean[] matched = new boolean[16];
+        int matchedDepth = 0;
+        boolean nested = false;
+        int depth = 0;
+        nodes[0] = match.node;
+        counters[0] = step.counters();
+        if (scopes != null)
+            scopes[0] = match.scope;
+        while (depth >= 0) {
+            XmlNode parent = nodes[depth];
+            List<ChildNode> children = parent.childList();
+            if (positions[depth] == children.size()) {
+                if (matched[depth])
+                    matchedDepth--;
+                nodes[depth--] = null;
+                continue;
+            }
+            ChildNode child = children.get(positions[depth]++);
+            JsonNode node = child.getNode();
+            if (!(node instanceof XmlNode))
+                continue;
+            XmlNode element = (XmlNode) node;
+            if (visited != null)
+                visited.add(element);
+            Scope scope = scopes != null ? new Scope(element, scopes[depth]) : null;
+            boolean isMatch = step.matches(parent, child.getAttributeName(), element, scopes != null ? scopes[depth] : null,
+                    counters[depth]);
+            if (isMatch) {
+                out.add(new Match(element, scope));
+                nested |= matchedDepth > 0;
+                if (out.size() >= limit)
+                    break;
+            }
+            if (element._children.isEmpty())
+                continue;
+            if (++depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth << 1);
+                positions = Arrays.copyOf(positions, depth << 1);
+                counters = Arrays.copyOf(counters, depth << 1);
+                matched = Arrays.copyOf(matched, depth << 1);
+                if (scopes != null)
+                    scopes = Arrays.copyOf(scopes, depth << 1);
+            }
+            nodes[depth] = element;
+            positions[depth] = 0;
+            if (counters[depth] == null)
+                counters[depth] = step.counters();
+            else
+                Arrays.fill(counters[depth], 0);
+            matched[depth] = isMatch;
+            if (isMatch)
+                matchedDepth++;
+            if (scopes != null)
+                scopes[depth] = scope;
+        }
+        return nested;
+    }
+
+    private static List<XmlNode> documentOrder(XmlNode context, List<XmlNode> nodes) {
+        Set<XmlNode> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        selected.addAll(nodes);
+        List<XmlNode> ordered = new ArrayList<>(selected.size());
+        XmlNode[] stack = new XmlNode[16];
+        int[] positions = new int[16];
+        int depth = 0;
+        stack[0] = context;
+        while (depth >= 0 && ordered.size() < selected.size()) {
+            List<ChildNode> children = stack[depth].childList();
+            if (positions[depth] == children.size()) {
+                stack[depth--] = null;
+                continue;
+            }
+            JsonNode node = children.get(positions[depth]++).getNode();
+            if (!(node instanceof XmlNode))
+                continue;
+            if (selected.contains(node))
+                ordered.add((XmlNode) node);
+            if (++depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth << 1);
+                positions = Arrays.copyOf(positions, depth << 1);
+            }
+            stack[depth] = (XmlNode) node;
+            positions[depth] = 0;
+        }
+        return ordered;
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    // Step access for streaming evaluation, see XmlProjection
+
+    int stepCount() {
+        return this.steps.length;
+    }
+
+    boolean isDescendantStep(int step) {
+        return this.steps[step].descendant;
+    }
+
+    boolean isPositionalStep(int step) {
+        return this.steps[step].positionals > 0;
+    }
+
+    int[] newCounters(int step) {
+        return this.steps[step].counters();
+    }
+
+    boolean matchesStep(int step, XMLStreamReader reader, int[] counters) {
+        return this.steps[step].matches(reader, counters);
+    }
+
+    private static final class Match {
+        private final XmlNode node;
+        // The node and its ancestors up to the context, kept only by queries that resolve namespace URIs
+        private final Scope scope;
+
+        private Match(XmlNode node, Scope scope) {
+            this.node = node;
+            this.scope = scope;
+        }
+    }
+
+    private static final class Scope {
+        private final XmlNode node;
+        private final Scope outer;
+
+        private Scope(XmlNode node, Scope outer) {
+            this.node = node;
+            this.outer = outer;
+        }
+
+        // Declarations are recorded on the declaring element and on its parent, so the nearest hit wins
+        String resolve(String prefix) {
+            for (Scope scope = this; scope != null; scope = scope.outer) {
+                String uri = scope.node.getNamespaceURI(prefix);
+                if (uri != null)
+                    return uri;
+            }
+            return null;
+        }
+    }
+
+    private static final class Step {
+        private final boolean descendant;
+        // Local name, or null for *
+        private final String name;
+        private final String prefix;
+        private final String namespaceURI;
+        private final Predicate[] predicates;
+        private final int positionals;
+
+        private Step(boolean descendant, String name, String prefix, String namespaceURI, Predicate[] predicates) {
+            this.descendant = descendant;
+            this.name = name;
+            this.prefix = prefix;
+            this.namespaceURI = namespaceURI;
+            this.predicates = predicates;
+            int positionals = 0;
+            for (Predicate predicate : predicates)
+                if (predicate.position > 0)
+                    positionals++;
+            this.positionals = positionals;
+        }
+
+        boolean resolvesNamespaces() {
+            boolean resolves = this.namespaceURI != null;
+            for (Predicate predicate : this.predicates)
+                resolves |= predicate.namespaceURI != null;
+            return resolves;
+        }
+
+        // One counter per positional predicate, reset for each parent
+        int[] counters() {
+            return this.positionals == 0 ? null : new int[this.positionals];
+        }
+
+        // parentScope is the parent and its ancestors, or null when the query compares prefixes literally
+        boolean matches(XmlNode parent, String childName, XmlNode child, Scope parentScope, int[] counters) {
+            if (this.name != null && !this.name.equals(childName))
+                return false;
+            if (this.prefix != null
+                    && !prefixMatches(parent.getElementPrefix(childName), this.prefix, this.namespaceURI, parentScope))
+                return false;
+            return this.predicatesMatch(child, parentScope, null, counters);
+        }
+
+        // The same test on the START_ELEMENT the reader is positioned on, before any node exists for it
+        boolean matches(XMLStreamReader reader, int[] counters) {
+            if (this.name != null && !this.name.equals(reader.getLocalName()))
+                return false;
+            if (this.prefix != null && !(this.namespaceURI != null ? this.namespaceURI.equals(reader.getNamespaceURI())
+                    : this.prefix.equals(reader.getPrefix())))
+                return false;
+            return this.predicatesMatch(null, null, reader, counters);
+        }
+
+        private boolean predicatesMatch(XmlNode child, Scope parentScope, XMLStreamReader reader, int[] counters) {
+            int counter = 0;
+            for (Predicate predicate : this.predicates) {
+                if (predicate.position > 0) {
+                    if (++counters[counter++] != predicate.position)
+                        return false;
+                } else if (!(reader != null ? predicate.matches(reader) : predicate.matches(child, parentScope))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean prefixMatches(String actual, String expected, String namespaceURI, Scope scope) {
+        if (actual == null)
+            return false;
+        if (namespaceURI == null)
+            return actual.equals(expected);
+        return namespaceURI.equals(scope.resolve(actual));
+    }
+
+    private static final class Predicate {
+        // 1-based position, or 0 for an attribute test
+        private final int position;
+        private final String attribute;
+        private final String prefix;
+        private final String namespaceURI;
+        // Required value, or null when the attribute only has to be present
+        private final String value;
+
+        private Predicate(int position, String attribute, String prefix, String namespaceURI, String value) {
+            this.position = position;
+            this.attribute = attribute;
+            this.prefix = prefix;
+            this.namespaceURI = namespaceURI;
+            this.value = value;
+        }
+
+        boolean matches(XmlNode element, Scope parentScope) {
+            Object actual = element.getAttribute(this.attribute);
+            if (actual == null)
+                return false;
+            if (this.prefix != null && !prefixMatches(element.getAttributePrefix(this.attribute), this.prefix,
+                    this.namespaceURI, parentScope == null ? null : new Scope(element, parentScope)))
+                return false;
+            return this.value == null || this.value.equals(String.valueOf(actual));
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (!this.attribute.equals(reader.getAttributeLocalName(i)))
+                    continue;
+                if (this.prefix != null && !(this.namespaceURI != null
+                        ? this.namespaceURI.equals(reader.getAttributeNamespace(i))
+                        : this.prefix.equals(reader.getAttributePrefix(i))))
+                    continue;
+                return this.value == null || this.value.equals(reader.getAttributeValue(i));
+            }
+            return false;
+        }
+    }
+
+    private static final class Parser {
+        private final String expression;
+        private final Map<String, String> namespaces;
+        private int position;
+
+        private Parser(String expression, Map<String, String> namespaces) {
+            this.expression = expression;
+            this.namespaces = namespaces;
+        }
+
+        Step[] parse() {
+            List<Step> steps = new ArrayList<>();
+            boolean descendant = false;
+            if (this.expression.startsWith("//")) {
+                descendant = true;
+                this.position = 2;
+            } else if (this.expression.startsWith("/")) {
+                this.position = 1;
+            }
+            while (true) {
+                steps.add(this.step(descendant));
+                if (this.position == this.expression.length())
+                    break;
+                this.expect('/');
+                descendant = this.accept('/');
+            }
+            return steps.toArray(new Step[0]);
+        }
+
+        private Step step(boolean descendant) {
+            String prefix = null;
+            String name = this.accept('*') ? null : this.name();
+            if (name != null && this.accept(':')) {
+                prefix = name;
+                name = this.accept('*') ? null : this.name();
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            while (this.accept('['))
+                predicates.add(this.predicate());
+            return new Step(descendant, name, prefix, this.uri(prefix), predicates.toArray(new Predicate[0]));
+        }
+
+        private Predicate predicate() {
+            Predicate predicate;
+            if (this.accept('@')) {
+                String attribute = this.name();
+                String prefix = null;
+                if (this.accept(':')) {
+                    prefix = attribute;
+                    attribute = this.name();
+                }
+                String value = this.accept('=') ? this.literal() : null;
+                predicate = new Predicate(0, attribute, prefix, this.uri(prefix), value);
+            } else {
+                int start = this.position;
+                while (this.position < this.expression.length() && Character.isDigit(this.expression.charAt(this.position)))
+                    this.position++;
+                int index = start == this.position ? 0 : Integer.parseInt(this.expression.substring(start, this.position));
+                if (index < 1)
+                    throw this.error("a position of at least 1 or an @attribute test");
+                predicate = new Predicate(index, null, null, null, null);
+            }
+            this.expect(']');
+            return predicate;
+        }
+
+        private String uri(String prefix) {
+            return prefix == null ? null : this.namespaces.get(prefix);
+        }
+
+        private String name() {
+            int start = this.position;
+            while (this.position < this.expression.length() && "/[]@=*:'\" \t\r\n".indexOf(this.expression.charAt(this.position)) < 0)
+                this.position++;
+            if (start == this.position)
+                throw this.error("a name");
+            return this.expression.substring(start, this.position);
+        }
+
+        private String literal() {
+            if (this.position < this.expression.length()) {
+                char quote = this.expression.charAt(this.position);
+                int end = quote == '\'' || quote == '"' ? this.expression.indexOf(quote, this.position + 1) : -1;
+                if (end > 0) {
+                    String value = this.expression.substring(this.position + 1, end);
+                    this.position = end + 1;
+                    return value;
+                }
+            }
+            throw this.error("a quoted value");
+        }
+
+        private boolean accept(char c) {
+            if (this.position < this.expression.length() && this.expression.charAt(this.position) == c) {
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!this.accept(c))
+                throw this.error("'" + c + "'");
+        }
+
+        private IllegalArgumentException error(String expected) {
+            return new IllegalArgumentException(String.format("Invalid path '%s': expected %s at offset %d",
+                    this.expression, expected, this.position));
+        }
+    }
+}
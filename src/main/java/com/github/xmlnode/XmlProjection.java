@@ -0,0 +1,186 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds only the parts of a document selected by a set of {@link XmlPath}s: each matching element with its whole
+ * subtree, and the ancestors leading to it with their attributes and namespaces but none of their other content.
+ * Every open element tracks which steps of which paths it has reached, so a subtree that no path can enter is skipped
+ * on the reader without creating nodes or strings for it.
+ */
+final class XmlProjection {
+    private static final int[] NO_STATES = new int[0];
+
+    private final XmlPath[] paths;
+
+    XmlProjection(XmlPath[] paths) {
+        for (XmlPath path : paths) {
+            if (path.stepCount() > 0xFFFF)
+                throw new IllegalArgumentException(String.format("Path '%s' has too many steps", path));
+        }
+        this.paths = paths.clone();
+    }
+
+    // The reader must be on the START_ELEMENT of the root, which becomes root; it is left on the root's END_ELEMENT
+    void read(XMLStreamReader reader, XmlNode root, JsonNodeFactory nodeFactory, XmlNode.XmlNodeDeserializer deserializer)
+            throws XMLStreamException {
+        XmlSymbolTable symbols = deserializer.getSymbols();
+        deserializer.readRootAttributes(reader, root);
+        int[] rootStates = new int[this.paths.length];
+        for (int p = 0; p < this.paths.length; p++)
+            rootStates[p] = state(p, 0);
+        Frame frame = new Frame(null, null, root, null, rootStates);
+        frame.attached = true;
+        while (frame != null && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                frame = frame.parent;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT)
+                // Text outside the selected subtrees is never kept
+                continue;
+            int[] states = NO_STATES;
+            int count = 0;
+            boolean matched = false;
+            // Every state is tested, even after a match, so that positional counters see each sibling
+            for (int i = 0; i < frame.states.length; i++) {
+                int state = frame.states[i];
+                XmlPath path = this.paths[state >>> 16];
+                int step = state & 0xFFFF;
+                if (path.isDescendantStep(step))
+                    // A // step may still match further down
+                    count = add(states = grow(states, count), count, state);
+                if (path.matchesStep(step, reader, frame.counters(i, path, step))) {
+                    if (step == path.stepCount() - 1)
+                        matched = true;
+                    else
+                        count = add(states = grow(states, count), count, state + 1);
+                }
+            }
+            if (matched) {
+                attach(frame);
+                XmlNode child = frame.node.putObject(symbols.symbol(reader.getLocalName()));
+                deserializer.readChildAttributes(reader, child);
+                deserializer.registerChildNamespaces(reader, frame.node);
+                XmlNode.XmlNodeDeserializer.ElementBuilder builder = deserializer.new ElementBuilder(child);
+                while (!builder.accept(reader, reader.next())) ;
+            } else if (count > 0) {
+                XmlNode node = new XmlNode(nodeFactory);
+                deserializer.readChildAttributes(reader, node);
+                XmlNode declarations = null;
+                String prefix = reader.getPrefix();
+                if (reader.getNamespaceCount() > 0 || prefix != null && !prefix.isEmpty()) {
+                    declarations = new XmlNode(nodeFactory);
+                    deserializer.registerChildNamespaces(reader, declarations);
+                }
+                // Below a // step the states usually repeat the parent's, which can then be shared
+                int[] childStates = count == frame.states.length && equal(states, frame.states, count) ? frame.states
+                        : Arrays.copyOf(states, count);
+                frame = new Frame(frame, symbols.symbol(reader.getLocalName()), node, declarations, childStates);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static int state(int path, int step) {
+        return path << 16 | step;
+    }
+
+    private static int[] grow(int[] states, int count) {
+        return count < states.length ? states : Arrays.copyOf(states, Math.max(4, count << 1));
+    }
+
+    // Adds state unless present and returns the new count
+    private static int add(int[] states, int count, int state) {
+        for (int i = 0; i < count; i++) {
+            if (states[i] == state)
+                return count;
+        }
+        states[count] = state;
+        return count + 1;
+    }
+
+    private static boolean equal(int[] a, int[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] != b[i])
+                return false;
+        }
+        return true;
+    }
+
+    // Links frame and any of its ancestors not yet in the tree, outermost first, so that siblings keep document order
+    private static void attach(Frame frame) {
+        List<Frame> pending = new ArrayList<>();
+        for (Frame f = frame; !f.attached; f = f.parent)
+            pending.add(f);
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Frame f = pending.get(i);
+            XmlNode parent = f.parent.node;
+            parent.addChild(new ChildNode(f.name, f.node));
+            if (f.declarations != null) {
+                for (Map.Entry<String, String> entry : f.declarations._namespacePrefixURIMapping.entrySet())
+                    parent.putNamespaceURI(entry.getKey(), entry.getValue());
+                for (Map.Entry<String, String> entry : f.declarations._elementPrefixMapping.entrySet())
+                    parent.addNamespace(entry.getValue(), entry.getKey());
+            }
+            f.attached = true;
+        }
+    }
+
+    // Leaves the reader on the END_ELEMENT of the element whose START_ELEMENT it is on
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        if (reader instanceof XMLStreamReader2) {
+            ((XMLStreamReader2) reader).skipElement();
+            return;
+        }
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private static final class Frame {
+        private final Frame parent;
+        private final String name;
+        private final XmlNode node;
+        // The element's namespace declarations and prefix, copied onto the parent once the element is kept
+        private final XmlNode declarations;
+        // (path << 16 | step) pairs: the steps the children of this element are tested against
+        private final int[] states;
+        // Positional predicate counters of each state's step over the children seen so far
+        private int[][] counters;
+        private boolean attached;
+
+        private Frame(Frame parent, String name, XmlNode node, XmlNode declarations, int[] states) {
+            this.parent = parent;
+            this.name = name;
+            this.node = node;
+            this.declarations = declarations;
+            this.states = states;
+        }
+
+        int[] counters(int state, XmlPath path, int step) {
+            if (!path.isPositionalStep(step))
+                return null;
+            if (this.counters == null)
+                this.counters = new int[this.states.length][];
+            if (this.counters[state] == null)
+                this.counters[state] = path.newCounters(step);
+            return this.counters[state];
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits a document into one {@link XmlNode} per element matching an absolute path such as {@code /feed/record}.
+ * Only the ancestors of the current match are tracked and every other subtree is skipped, so memory stays
+ * proportional to a single record. Path steps match local names, or {@code prefix:local} when a prefix is given.
+ * Namespaces declared on the ancestors of a record are copied onto the record so it can be written standalone.
+ */
+public class XmlRecordReader implements Iterator<XmlNode>, Closeable {
+    private final XMLStreamReader reader;
+    private final Closeable source;
+    private final JsonNodeFactory nodeFactory;
+    private final XmlNode.XmlNodeDeserializer deserializer;
+    private final String[] stepPrefixes;
+    private final String[] stepNames;
+    // Namespace declarations of the currently open ancestors; its size is the number of path steps matched so far.
+    private final List<Map<String, String>> openAncestors = new ArrayList<>();
+    private boolean positioned;
+    private boolean finished;
+
+    public XmlRecordReader(XMLStreamReader reader, String path) {
+        this(reader, path, JsonNodeFactory.instance, new XmlNode.XmlNodeDeserializer(), null);
+    }
+
+    XmlRecordReader(XMLStreamReader reader, String path, JsonNodeFactory nodeFactory,
+                    XmlNode.XmlNodeDeserializer deserializer, Closeable source) {
+        this.reader = reader;
+        String[] steps = parsePath(path);
+        this.stepPrefixes = new String[steps.length];
+        this.stepNames = new String[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            int colon = steps[i].indexOf(':');
+            this.stepPrefixes[i] = colon < 0 ? null : steps[i].substring(0, colon);
+            this.stepNames[i] = steps[i].substring(colon + 1);
+        }
+        this.nodeFactory = nodeFactory;
+        this.deserializer = deserializer;
+        this.source = source;
+    }
+
+    private static String[] parsePath(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        String[] steps = trimmed.split("/");
+        for (String step : steps)
+            if (step.isEmpty())
+                throw new IllegalArgumentException(String.format("Invalid record path '%s'", path));
+        return steps;
+    }
+
+    private boolean matches(int depth) {
+        if (!this.stepNames[depth].equals(this.reader.getLocalName()))
+            return false;
+        return this.stepPrefixes[depth] == null || this.stepPrefixes[depth].equals(this.reader.getPrefix());
+    }
+
+    private void skipElement() throws XMLStreamException {
+        if (this.reader instanceof XMLStreamReader2) {
+            ((XMLStreamReader2) this.reader).skipElement();
+            return;
+        }
+        for (int depth = 1; depth > 0; ) {
+            int event = this.reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private Map<String, String> declaredNamespaces() {
+        Map<String, String> declared = new LinkedHashMap<>();
+        for (int i = 0; i < this.reader.getNamespaceCount(); i++) {
+            String prefix = this.reader.getNamespacePrefix(i);
+            if (prefix != null && !prefix.isEmpty())
+                declared.put(prefix, this.reader.getNamespaceURI(i));
+        }
+        return declared;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.positioned)
+            return true;
+        if (this.finished)
+            return false;
+        try {
+            while (this.reader.hasNext()) {
+                int event = this.reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    int depth = this.openAncestors.size();
+                    if (!this.matches(depth)) {
+                        this.skipElement();
+                    } else if (depth == this.stepNames.length - 1) {
+                        this.positioned = true;
+                        return true;
+                    } else {
+                        this.openAncestors.add(this.declaredNamespaces());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    this.openAncestors.remove(this.openAncestors.size() - 1);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+        this.finished = true;
+        return false;
+    }
+
+    @Override
+    public XmlNode next() {
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+        this.positioned = false;
+        XmlNode record = new XmlNode(this.nodeFactory);
+        for (Map<String, String> namespaces : this.openAncestors)
+            for (Map.Entry<String, String> namespace : namespaces.entrySet())
+                record.putNamespaceURI(namespace.getKey(), namespace.getValue());
+        try {
+            return this.deserializer.readElement(this.reader, record);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Spliterator<XmlNode> spliterator() {
+        return Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    public Stream<XmlNode> stream() {
+        return StreamSupport.stream(this.spliterator(), false).onClose(() -> {
+            try {
+                this.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.finished = true;
+        this.positioned = false;
+        try {
+            this.reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            if (this.source != null)
+                this.source.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe canonicalization cache used while deserializing. Element names, attribute names, prefixes and
+ * namespace URIs go through the symbol table; short text and attribute values go through the optional value table.
+ * Both are direct-mapped: a colliding entry simply replaces the previous one, so memory never grows past the
+ * configured capacity and no locking is needed (cached Strings and TextNodes are immutable).
+ */
+public class XmlSymbolTable {
+    public static final int DEFAULT_SYMBOL_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 16;
+
+    private static final XmlSymbolTable DEFAULT = new XmlSymbolTable(DEFAULT_SYMBOL_CAPACITY, 0, 0);
+
+    private final String[] symbols;
+    private final TextNode[] values;
+    private final int maxValueLength;
+    private final LongAdder symbolHits = new LongAdder();
+    private final LongAdder symbolMisses = new LongAdder();
+    private final LongAdder valueHits = new LongAdder();
+    private final LongAdder valueMisses = new LongAdder();
+
+    /**
+     * @param symbolCapacity slots for names, prefixes and URIs (rounded up to a power of two, 0 disables)
+     * @param valueCapacity  slots for text values (rounded up to a power of two, 0 disables)
+     * @param maxValueLength longest text value that is cached
+     */
+    public XmlSymbolTable(int symbolCapacity, int valueCapacity, int maxValueLength) {
+        if (symbolCapacity < 0 || valueCapacity < 0 || maxValueLength < 0)
+            throw new IllegalArgumentException("Capacities and lengths must not be negative");
+        this.symbols = symbolCapacity == 0 ? null : new String[tableSize(symbolCapacity)];
+        this.values = valueCapacity == 0 ? null : new TextNode[tableSize(valueCapacity)];
+        this.maxValueLength = maxValueLength;
+    }
+
+    public static XmlSymbolTable getDefault() {
+        return DEFAULT;
+    }
+
+    public static XmlSymbolTable withValueCache(int valueCapacity) {
+        return new XmlSymbolTable(DEFAULT_SYMBOL_CAPACITY, valueCapacity, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    private static int tableSize(int capacity) {
+        int size = Integer.highestOneBit(capacity);
+        return size < capacity ? size << 1 : size;
+    }
+
+    private static int index(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+
+    public String symbol(String s) {
+        if (s == null || this.symbols == null)
+            return s;
+        int i = index(s.hashCode(), this.symbols.length);
+        String cached = this.symbols[i];
+        if (cached == s || (cached != null && cached.equals(s))) {
+            this.symbolHits.increment();
+            return cached;
+        }
+        this.symbols[i] = s;
+        this.symbolMisses.increment();
+        return s;
+    }
+
+    public TextNode textValue(String s) {
+        if (this.values == null || s.length() > this.maxValueLength)
+            return TextNode.valueOf(s);
+        int i = index(s.hashCode(), this.values.length);
+        TextNode cached = this.values[i];
+        if (cached != null && cached.textValue().equals(s)) {
+            this.valueHits.increment();
+            return cached;
+        }
+        TextNode node = TextNode.valueOf(s);
+        this.values[i] = node;
+        this.valueMisses.increment();
+        return node;
+    }
+
+    // Same as textValue(String) for the given range, but only builds a String when the value is not already cached.
+    public TextNode textValue(char[] chars, int offset, int length) {
+        if (this.values == null || length > this.maxValueLength)
+            return TextNode.valueOf(new String(chars, offset, length));
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + chars[i];
+        int i = index(hash, this.values.length);
+        TextNode cached = this.values[i];
+        if (cached != null && contentEquals(cached.textValue(), chars, offset, length)) {
+            this.valueHits.increment();
+            return cached;
+        }
+        TextNode node = TextNode.valueOf(new String(chars, offset, length));
+        this.values[i] = node;
+        this.valueMisses.increment();
+        return node;
+    }
+
+    private static boolean contentEquals(String s, char[] chars, int offset, int length) {
+        if (s.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    public String stringValue(String s) {
+        if (this.values == null || s == null || s.length() > this.maxValueLength)
+            return s;
+        return this.textValue(s).textValue();
+    }
+
+    public long getSymbolHits() {
+        return this.symbolHits.sum();
+    }
+
+    public long getSymbolMisses() {
+        return this.symbolMisses.sum();
+    }
+
+    public long getValueHits() {
+        return this.valueHits.sum();
+    }
+
+    public long getValueMisses() {
+        return this.valueMisses.sum();
+    }
+
+    public double getSymbolHitRate() {
+        return hitRate(this.getSymbolHits(), this.getSymbolMisses());
+    }
+
+    public double getValueHitRate() {
+        return hitRate(this.getValueHits(), this.getValueMisses());
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    public void resetCounters() {
+        this.symbolHits.reset();
+        this.symbolMisses.reset();
+        this.valueHits.reset();
+        this.valueMisses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XmlSymbolTable[symbols %d/%d hit, values %d/%d hit]",
+                this.getSymbolHits(), this.getSymbolHits() + this.getSymbolMisses(),
+                this.getValueHits(), this.getValueHits() + this.getValueMisses());
+    }
+}
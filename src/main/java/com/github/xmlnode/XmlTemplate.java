@@ -0,0 +1,300 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A document compiled once from an {@link XmlNode} holding named {@link #hole(String) holes}, rendered many times by
+ * writing its pre-encoded UTF-8 markup with the escaped hole values in between. Nothing but the values is
+ * serialized per render, which suits responses that are mostly fixed envelope. Instances are immutable and
+ * thread-safe; see {@link XmlNodeCodec#compileTemplate(XmlNode)}.
+ * <p>
+ * A hole set as element content ({@code setValue(XmlTemplate.hole("id"))}) takes strings, numbers, booleans, value
+ * nodes or an {@link XmlNode}, whose child elements and text are written in its place. A hole set as an attribute
+ * value ({@code putAttribute("id", XmlTemplate.hole("id"))}) takes anything but an XmlNode. A value of {@code null}
+ * writes nothing, and the same name may be used for several holes.
+ */
+public final class XmlTemplate {
+    // A hole is written as MARK_START, its name and MARK_END, three bytes each in UTF-8. Private use characters never
+    // need escaping, so the writer leaves them as they are.
+    private static final char MARK_START = '\uE000';
+    private static final char MARK_END = '\uE001';
+    private static final int MARK_LENGTH = 3;
+    // Where the writer's output is at: text, inside a tag, inside a (double-quoted) attribute value or in CDATA
+    private static final int TEXT = 0;
+    private static final int TAG = 1;
+    private static final int ATTRIBUTE = 2;
+    private static final int CDATA = 3;
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+
+    private final XmlNodeStaxWriter staxWriter;
+    // segments[i] is written before holes[i]; the last segment closes the document
+    private final byte[][] segments;
+    private final String[] holes;
+    private final boolean[] attributeHoles;
+
+    XmlTemplate(byte[] xml, XmlNodeStaxWriter staxWriter) {
+        this.staxWriter = staxWriter;
+        List<byte[]> segments = new ArrayList<>();
+        List<String> holes = new ArrayList<>();
+        List<Boolean> attributeHoles = new ArrayList<>();
+        int state = TEXT;
+        int segmentStart = 0;
+        for (int i = 0; i < xml.length; i++) {
+            if (isMark(xml, i, MARK_START)) {
+                int nameStart = i + MARK_LENGTH;
+                int nameEnd = nameStart;
+                while (nameEnd < xml.length && !isMark(xml, nameEnd, MARK_END))
+                    nameEnd++;
+                if (nameEnd == xml.length || (state != TEXT && state != ATTRIBUTE))
+                    throw new IllegalArgumentException(String.format(
+                            "Unexpected U+E000 at offset %d of the template markup; holes must be element content or attribute values", i));
+                segments.add(Arrays.copyOfRange(xml, segmentStart, i));
+                holes.add(new String(xml, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8));
+                attributeHoles.add(state == ATTRIBUTE);
+                i = nameEnd + MARK_LENGTH - 1;
+                segmentStart = i + 1;
+                continue;
+            }
+            state = next(state, xml, i);
+        }
+        segments.add(Arrays.copyOfRange(xml, segmentStart, xml.length));
+        this.segments = segments.toArray(new byte[0][]);
+        this.holes = holes.toArray(new String[0]);
+        this.attributeHoles = new boolean[this.holes.length];
+        for (int i = 0; i < this.holes.length; i++)
+            this.attributeHoles[i] = attributeHoles.get(i);
+    }
+
+    private static int next(int state, byte[] xml, int i) {
+        byte b = xml[i];
+        switch (state) {
+            case TEXT:
+                if (b != '<')
+                    return TEXT;
+                return startsWith(xml, i, CDATA_START) ? CDATA : TAG;
+            case TAG:
+                return b == '"' ? ATTRIBUTE : b == '>' ? TEXT : TAG;
+            case ATTRIBUTE:
+                return b == '"' ? TAG : ATTRIBUTE;
+            default:
+                return b == '>' && i >= 2 && startsWith(xml, i - 2, CDATA_END) ? TEXT : CDATA;
+        }
+    }
+
+    private static boolean startsWith(byte[] xml, int offset, byte[] prefix) {
+        if (offset + prefix.length > xml.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (xml[offset + i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    // The UTF-8 encoding of mark, a character between U+E000 and U+E03F
+    private static boolean isMark(byte[] xml, int i, char mark) {
+        return i + MARK_LENGTH <= xml.length && xml[i] == (byte) 0xEE && xml[i + 1] == (byte) 0x80
+                && xml[i + 2] == (byte) (0x80 | (mark & 0x3F));
+    }
+
+    /**
+     * @return a placeholder for a value supplied at render time, to be set as element content or attribute value
+     */
+    public static JsonNode hole(String name) {
+        if (name == null || name.isEmpty() || name.indexOf(MARK_START) >= 0 || name.indexOf(MARK_END) >= 0)
+            throw new IllegalArgumentException(String.format("Invalid template hole name '%s'", name));
+        return new Hole(name);
+    }
+
+    /**
+     * @return the distinct hole names in document order
+     */
+    public List<String> getHoleNames() {
+        return Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(Arrays.asList(this.holes))));
+    }
+
+    /**
+     * Writes the document with every hole replaced by {@code values.get(name)}. The stream is neither flushed nor
+     * closed.
+     *
+     * @throws IllegalArgumentException if a hole has no entry in {@code values} or a value does not fit its hole
+     */
+    public void render(Map<String, ?> values, OutputStream out) throws IOException {
+        Escaper escaper = new Escaper(out);
+        for (int i = 0; i < this.holes.length; i++) {
+            out.write(this.segments[i]);
+            String name = this.holes[i];
+            Object value = values.get(name);
+            if (value == null && !values.containsKey(name))
+                throw new IllegalArgumentException(String.format("No value for template hole '%s'", name));
+            this.writeValue(name, value, this.attributeHoles[i], escaper, out);
+        }
+        out.write(this.segments[this.holes.length]);
+    }
+
+    public String render(Map<String, ?> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(this.segments[0].length + 256);
+        this.render(values, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void writeValue(String name, Object value, boolean attribute, Escaper escaper, OutputStream out)
+            throws IOException {
+        if (value == null || value instanceof JsonNode && ((JsonNode) value).isNull())
+            return;
+        if (value instanceof XmlNode) {
+            XmlNode node = (XmlNode) value;
+            if (attribute || !node._attributes.isEmpty() || !node._namespacePrefixURIMapping.isEmpty())
+                throw new IllegalArgumentException(String.format(attribute
+                        ? "Template hole '%s' is an attribute value and cannot take an XmlNode"
+                        : "XmlNode for template hole '%s' has attributes or namespace declarations of its own", name));
+            this.staxWriter.writeContent(node, out);
+            return;
+        }
+        if (value instanceof JsonNode) {
+            JsonNode node = (JsonNode) value;
+            if (node.isContainerNode() || node instanceof Hole)
+                throw new IllegalArgumentException(String.format("Template hole '%s' cannot take %s", name, node.getNodeType()));
+            value = node.asText();
+        }
+        escaper.write(value.toString(), attribute);
+    }
+
+    /**
+     * Encodes values as UTF-8 with the escaping the StAX writer applies to text and attribute values, except that
+     * {@code >} is always escaped in text, through a small buffer so that unbuffered streams are not written byte by
+     * byte.
+     */
+    private static final class Escaper {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[512];
+        private int length;
+
+        Escaper(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(String value, boolean attribute) throws IOException {
+            for (int i = 0, n = value.length(); i < n; i++) {
+                char c = value.charAt(i);
+                if (this.length > this.buffer.length - 8)
+                    this.drain();
+                String escape = c < 0xA0 ? escape(c, attribute) : null;
+                if (escape != null) {
+                    for (int j = 0; j < escape.length(); j++)
+                        this.buffer[this.length++] = (byte) escape.charAt(j);
+                } else if (c < 0x80) {
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r')
+                        throw new IOException(String.format("Invalid white space character (0x%x) in template value", (int) c));
+                    this.buffer[this.length++] = (byte) c;
+                } else if (c < 0x800) {
+                    this.buffer[this.length++] = (byte) (0xC0 | c >> 6);
+                    this.buffer[this.length++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    this.buffer[this.length++] = (byte) (0xF0 | codePoint >> 18);
+                    this.buffer[this.length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    this.buffer[this.length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    this.buffer[this.length++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate, replaced like String.getBytes does
+                    this.buffer[this.length++] = '?';
+                } else {
+                    this.buffer[this.length++] = (byte) (0xE0 | c >> 12);
+                    this.buffer[this.length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    this.buffer[this.length++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            this.drain();
+        }
+
+        private static String escape(char c, boolean attribute) {
+            switch (c) {
+                case '<':
+                    return "&lt;";
+                case '&':
+                    return "&amp;";
+                case '>':
+                    return attribute ? null : "&gt;";
+                case '"':
+                    return attribute ? "&quot;" : null;
+                case '\r':
+                    return "&#xd;";
+                case '\n':
+                    return attribute ? "&#xa;" : null;
+                case '\t':
+                    return attribute ? "&#x9;" : null;
+                default:
+                    // DEL and the C1 controls are written as character references in text
+                    return c >= 0x7F && !attribute ? "&#x" + Integer.toHexString(c) + ';' : null;
+            }
+        }
+
+        private void drain() throws IOException {
+            this.out.write(this.buffer, 0, this.length);
+            this.length = 0;
+        }
+    }
+
+    // Written as its mark by both XmlNode.serialize and XmlNodeStaxWriter, which hand unknown value nodes to Jackson
+    private static final class Hole extends ValueNode {
+        private final String name;
+
+        Hole(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public JsonToken asToken() {
+            return JsonToken.VALUE_STRING;
+        }
+
+        @Override
+        public JsonNodeType getNodeType() {
+            return JsonNodeType.STRING;
+        }
+
+        @Override
+        public String asText() {
+            return "";
+        }
+
+        @Override
+        public void serialize(JsonGenerator g, SerializerProvider provider) throws IOException {
+            g.writeString(MARK_START + this.name + MARK_END);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Hole && ((Hole) o).name.equals(this.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Hole.class, this.name);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("XmlTemplate.hole(%s)", this.name);
+        }
+    }
+}
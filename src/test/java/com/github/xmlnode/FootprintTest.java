@@ -0,0 +1,165 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FootprintTest {
+    private static final int RECORDS = 1000;
+
+    private static long footprint(Object root) {
+        // The node factory is a shared singleton, not part of any document.
+        return GraphLayout.parseInstance(root).subtract(GraphLayout.parseInstance(JsonNodeFactory.instance)).totalSize();
+    }
+
+    // The layout XmlNode had before its collections were allocated on first write: an ArrayList, a LinkedHashMap
+    // and three HashMaps per node, plus ObjectNode's own LinkedHashMap
+    private static final class EagerNode extends ObjectNode {
+        private final List<ChildNode> children = new ArrayList<>();
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private final Map<String, String> namespacePrefixURIMapping = new HashMap<>();
+        private final Map<String, List<String>> namespacePrefixElementMapping = new HashMap<>();
+        private final Map<String, String> prefixAttributeMapping = new HashMap<>();
+
+        EagerNode(XmlNode source) {
+            super(JsonNodeFactory.instance);
+            this.attributes.putAll(source.getAttributes());
+            for (ChildNode child : source.childList()) {
+                JsonNode node = child.getNode();
+                this.children.add(new ChildNode(child.getAttributeName(),
+                        node instanceof XmlNode ? new EagerNode((XmlNode) node) : node, child.isValueNode()));
+            }
+        }
+    }
+
+    @Test
+    public void testBytesPerNodeReport() throws JsonProcessingException {
+        StringBuilder sb = new StringBuilder("<feed>");
+        for (int i = 0; i < RECORDS; i++)
+            sb.append("<record id=\"").append(i).append("\"><name>n</name><qty>1</qty><price>2</price></record>");
+        XmlNode node = XmlNode.parse(sb.append("</feed>").toString());
+        int nodes = 1 + RECORDS * 4;
+
+        double bytesPerNode = (double) footprint(node) / nodes;
+        double eagerBytesPerNode = (double) footprint(new EagerNode(node)) / nodes;
+        System.out.println(GraphLayout.parseInstance(node).toFootprint());
+        System.out.printf("XmlNode footprint: %.1f bytes per node (%d nodes), eagerly allocated layout: %.1f%n",
+                bytesPerNode, nodes, eagerBytesPerNode);
+        assertTrue(bytesPerNode < eagerBytesPerNode * 0.6,
+                String.format("%.1f bytes per node, %.1f eagerly allocated", bytesPerNode, eagerBytesPerNode));
+    }
+
+    @Test
+    public void testLeafAllocatesNoMaps() {
+        XmlNode leaf = new XmlNode(JsonNodeFactory.instance);
+        leaf.setValue("value");
+        // Only the shared Collections.emptyMap() instance may be reachable
+        for (Class<?> type : GraphLayout.parseInstance(leaf).getClasses())
+            assertFalse(Map.class.isAssignableFrom(type) && type != Collections.emptyMap().getClass(), type.getName());
+        assertTrue(leaf.getAttributes().isEmpty());
+        for (Class<?> type : GraphLayout.parseInstance(leaf).getClasses())
+            assertNotEquals(CompactMap.class, type);
+        XmlNode source = new XmlNode(JsonNodeFactory.instance).putAttribute("id", 1);
+        source.putObject("child");
+        XmlNode copy = source.copyOnWrite();
+        assertEquals(1, copy.getAttributes().get("id"));
+        assertThrows(UnsupportedOperationException.class, () -> copy.getAttributes().put("id", 2));
+        assertSame(source._children, copy._children);
+        assertNull(leaf.getNamespaceURI("ns"));
+        assertNull(leaf.getNamespaceElements("ns"));
+    }
+
+    @Test
+    public void testLookupsIndexOnlyWideNodes() throws JsonProcessingException {
+        XmlNode node = XmlNode.parse("<r><a><b>1</b><c>2</c></a><d>3</d></r>");
+        assertNotNull(node.get("a"));
+        assertTrue(node.has("d"));
+        assertTrue(node.path("a").path("c").isObject());
+        assertEquals(1, XmlPath.compile("/a/b").select(node).size());
+        assertTrue(node.get("a").findValue("absent") == null);
+        for (Class<?> type : GraphLayout.parseInstance(node).getClasses())
+            assertNotEquals(HashMap.class, type);
+
+        XmlNode wide = new XmlNode(JsonNodeFactory.instance);
+        for (int i = 0; i <= XmlNode.INDEX_MIN_CHILDREN; i++)
+            wide.put("item" + i, i);
+        assertNotNull(wide.get("item3"));
+        assertTrue(GraphLayout.parseInstance(wide).getClasses().contains(HashMap.class));
+        wide.put("last", 1);
+        assertEquals(1, wide.get("last").get(0).asInt());
+    }
+
+    @Test
+    public void testLeafUpgradesWhenChildrenAreAdded() throws JsonProcessingException {
+        XmlNode node = new XmlNode(JsonNodeFactory.instance);
+        node.put("qty", 1);
+        XmlNode puppy = node.put("puppy", true);
+        XmlNode qty = (XmlNode) node.get("qty");
+        assertTrue(qty.isLeaf());
+        assertTrue(puppy.isLeaf());
+        for (Class<?> type : GraphLayout.parseInstance(qty).getClasses())
+            assertNotEquals(ArrayList.class, type);
+
+        puppy.put("breed", "Dachshund");
+        assertFalse(puppy.isLeaf());
+        assertEquals(2, puppy.size());
+        assertEquals("<root><qty>1</qty><puppy>true<breed>Dachshund</breed></puppy></root>", XmlNode.write(node, "root"));
+
+        puppy.without("breed");
+        assertTrue(puppy.isLeaf());
+        qty.remove(0);
+        assertTrue(qty.isEmpty());
+        qty.setValue(2);
+        assertTrue(qty.isLeaf());
+        assertEquals("<root><qty>2</qty><puppy>true</puppy></root>", XmlNode.write(node, "root"));
+    }
+
+    @Test
+    public void testCompactMapSpillsPastInlineCapacity() {
+        CompactMap<Object> map = new CompactMap<>();
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < CompactMap.INLINE_CAPACITY; i++) {
+            map.put("a" + i, i);
+            expected.put("a" + i, i);
+        }
+        map.put(null, "default");
+        expected.put(null, "default");
+        assertEquals(expected, map);
+        assertEquals("default", map.get(null));
+        assertEquals(3, map.put("a3", 30));
+        expected.put("a3", 30);
+        map.put("extra", true);
+        expected.put("extra", true);
+        assertEquals(expected, map);
+        assertEquals(Arrays.asList(expected.keySet().toArray()), Arrays.asList(map.keySet().toArray()));
+
+        CompactMap<Object> small = new CompactMap<>();
+        small.put("x", 1);
+        small.put("y", 2);
+        small.put("z", 3);
+        Iterator<Map.Entry<String, Object>> it = small.entrySet().iterator();
+        it.next();
+        it.next().setValue(20);
+        it.remove();
+        assertEquals(2, small.size());
+        assertNull(small.get("y"));
+        assertEquals(3, small.get("z"));
+        assertEquals(1, small.remove("x"));
+        small.clear();
+        assertTrue(small.isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class LazyChildNodeTest {
+    static final String SOAP = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"\n" +
+            "                  xmlns:order=\"http://example.com/order\">\n" +
+            "  <soapenv:Header><order:Trace>abc &amp; def</order:Trace></soapenv:Header>\n" +
+            "  <soapenv:Body>\n" +
+            "    <order:PlaceOrder>\n" +
+            "      <order:Item order:ID=\"987\" currency=\"USD\">\n" +
+            "        <order:Name>Laptop</order:Name>\n" +
+            "        <order:Quantity>2</order:Quantity>\n" +
+            "        <note><![CDATA[<fragile>]]></note>\n" +
+            "      </order:Item>\n" +
+            "    </order:PlaceOrder>\n" +
+            "  </soapenv:Body>\n" +
+            "</soapenv:Envelope>";
+
+    private static void materializeAll(JsonNode node) {
+        for (Iterator<JsonNode> it = node.elements(); it.hasNext(); )
+            materializeAll(it.next());
+    }
+
+    @Test
+    public void testUntouchedSubtreesAreCopied() throws IOException {
+        XmlNode node = XmlNode.parseLazy(SOAP);
+        assertEquals(2, node.size());
+        for (ChildNode child : node._children)
+            assertFalse(((LazyChildNode) child).isMaterialized());
+
+        String outputXml = XmlNode.write(node, "soapenv:Envelope");
+        System.out.printf("%s%n%n", outputXml);
+        assertThat(outputXml).and(SOAP).ignoreWhitespace().areIdentical();
+        for (ChildNode child : node._children)
+            assertFalse(((LazyChildNode) child).isMaterialized());
+    }
+
+    @Test
+    public void testAccessMaterializesOnlyTheTouchedPath() throws IOException {
+        XmlNode node = XmlNode.parseLazy(SOAP);
+        XmlNode item = (XmlNode) node.get("Body").get("PlaceOrder").get("Item");
+        assertEquals("987", item.getAttribute("ID"));
+        assertEquals("Laptop", item.get("Name").get("@text").asText());
+        assertEquals("<fragile>", item.get("note").get("@text").asText());
+        assertFalse(((LazyChildNode) node._children.get(0)).isMaterialized());
+        assertTrue(((LazyChildNode) node._children.get(1)).isMaterialized());
+
+        ((XmlNode) item.get("Quantity")).remove(0);
+        ((XmlNode) item.get("Quantity")).setValue(5);
+        String outputXml = XmlNode.write(node, "soapenv:Envelope");
+        System.out.printf("%s%n%n", outputXml);
+        assertThat(outputXml).and(SOAP.replace("<order:Quantity>2<", "<order:Quantity>5<"))
+                .ignoreWhitespace().areIdentical();
+    }
+
+    @Test
+    public void testMatchesEagerParse() throws IOException {
+        XmlNode lazy = XmlNode.parseLazy(SOAP);
+        materializeAll(lazy);
+        XmlNode eager = XmlNode.parse(SOAP);
+        assertEquals(XmlNode.write(eager, "soapenv:Envelope"), XmlNode.write(lazy, "soapenv:Envelope"));
+        assertEquals(eager.findValue("Quantity").get("@text"), lazy.findValue("Quantity").get("@text"));
+    }
+
+    @Test
+    public void testInheritedDefaultNamespace() throws IOException {
+        String inputXml = "<root xmlns=\"http://example.com/a&amp;b\"><outer><inner id=\"x\">v</inner></outer></root>";
+        XmlNode node = XmlNode.parseLazy(inputXml);
+        XmlNode inner = (XmlNode) node.get("outer").get("inner");
+        assertEquals("x", inner.getAttribute("id"));
+        assertEquals("v", inner.get("@text").asText());
+    }
+
+    @Test
+    public void testDoctypeFallsBackToFullParse() throws IOException {
+        String inputXml = "<!DOCTYPE r [<!ENTITY e \"ent\">]><r><a>&e;</a><b><c>&e;</c></b></r>";
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("r");
+        XmlNode lazy = codec.readLazy(inputXml);
+        String outputXml = codec.write(lazy);
+        System.out.printf("%s%n", outputXml);
+        assertEquals(codec.write(codec.read(inputXml)), outputXml);
+        assertThat(outputXml).and("<r><a>ent</a><b><c>ent</c></b></r>").areIdentical();
+        assertEquals("ent", lazy.get("b").get("c").get(0).asText());
+    }
+}
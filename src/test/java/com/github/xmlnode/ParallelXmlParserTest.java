@@ -0,0 +1,85 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelXmlParserTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    public static void shutDown() {
+        POOL.shutdown();
+    }
+
+    // The binary encoding covers attribute types, namespace and prefix maps and child order, not just the markup
+    private static void assertIdentical(XmlNodeCodec codec, XmlNode expected, XmlNode actual) throws IOException {
+        assertEquals(codec.write(expected), codec.write(actual));
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        codec.writeBinary(expected, expectedBytes);
+        codec.writeBinary(actual, actualBytes);
+        assertArrayEquals(expectedBytes.toByteArray(), actualBytes.toByteArray());
+    }
+
+    // Batches of a single element, so that even tiny documents take the parallel path
+    private static XmlNode readInSmallBatches(XmlNodeCodec codec, String xml, int splitDepth) throws Exception {
+        XmlNode node = new ParallelXmlParser(xml, splitDepth, 1, codec.getXmlMapper().getFactory().getXMLInputFactory(),
+                codec.getXmlMapper().getNodeFactory(), new XmlNode.XmlNodeDeserializer(codec.getSymbolTable())).parse(POOL);
+        return node != null ? node : codec.read(xml);
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.github.xmlnode.XmlNodeTest#getParameters")
+    public void testMatchesSequentialParse(String inputXml, String rootName) throws Exception {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        XmlNode expected = codec.read(inputXml);
+        for (int splitDepth = 1; splitDepth <= 3; splitDepth++)
+            assertIdentical(codec, expected, readInSmallBatches(codec, inputXml, splitDepth));
+        assertIdentical(codec, expected, codec.readParallel(inputXml));
+    }
+
+    @Test
+    public void testLargeDocumentInManyBatches() throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0'?>\n<feed xmlns=\"http://example.com/feed\" xmlns:inv=\"http://example.com/invoice\">\n");
+        for (int group = 0; group < 4; group++) {
+            xml.append("  <group n=\"").append(group).append("\" xmlns:g=\"http://example.com/g").append(group).append("\">lead text\n");
+            for (int i = 0; i < 2000; i++) {
+                xml.append("    <!-- record ").append(i).append(" --><inv:record inv:id=\"").append(i)
+                        .append("\" note='a &gt; b'><g:Total currency=\"USD\">").append(i).append(".50</g:Total>")
+                        .append("<note><![CDATA[<b>").append(i).append("</b>]]></note>");
+                if (i % 3 == 0)
+                    xml.append("<empty/><mixed>x <i>y</i> z</mixed>");
+                xml.append("</inv:record>");
+                if (i % 500 == 0)
+                    xml.append("between &amp; records");
+            }
+            xml.append("  </group>\n  <marker/>\n");
+        }
+        String inputXml = xml.append("</feed>").toString();
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("feed");
+        XmlNode expected = codec.read(inputXml);
+        assertIdentical(codec, expected, codec.readParallel(inputXml, 2, POOL));
+        assertIdentical(codec, expected, codec.readParallel(inputXml, 1, POOL));
+        assertIdentical(codec, expected, codec.readParallel(inputXml));
+    }
+
+    @Test
+    public void testFallbacksAndErrors() throws Exception {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("doc");
+        String withDoctype = "<!DOCTYPE doc [<!ENTITY who \"world\">]><doc><a>hello &who;</a><b/></doc>";
+        assertEquals("hello world", readInSmallBatches(codec, withDoctype, 1).get("a").get("@text").asText());
+        assertThrows(XMLStreamException.class, () -> readInSmallBatches(codec, "<doc><a>1</a><b>2</c></doc>", 1));
+        // Rejected by the pre-scan, so the sequential parse reports it exactly as read() does
+        assertThrows(RuntimeException.class, () -> codec.readParallel("<doc><a>1</a><b>2</b>", 1, POOL));
+        assertThrows(IllegalArgumentException.class, () -> codec.readParallel("<doc/>", 0, POOL));
+    }
+}
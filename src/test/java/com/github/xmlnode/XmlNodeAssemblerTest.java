@@ -0,0 +1,104 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlNodeAssemblerTest {
+    private static void fill(XmlNode section, int backend) {
+        XmlNode result = section.putObject("result", "b");
+        result.putAttribute("backend", backend);
+        for (int i = 0; i < 3; i++)
+            result.put("item", backend * 10 + i);
+    }
+
+    @Test
+    public void testSectionsKeepReservationOrder() throws IOException {
+        int backends = 32;
+        XmlNode expected = new XmlNode(JsonNodeFactory.instance);
+        expected.putNamespaceURI("b", "urn:backend");
+        for (int i = 0; i < backends; i++)
+            fill(expected, i);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int run = 0; run < 5; run++) {
+                XmlNode root = new XmlNode(JsonNodeFactory.instance);
+                XmlNodeAssembler assembler = new XmlNodeAssembler(root);
+                List<CompletableFuture<Void>> tasks = new ArrayList<>();
+                for (int i = 0; i < backends; i++) {
+                    XmlNode section = assembler.reserve();
+                    int backend = i;
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        if (backend == 0)
+                            section.putNamespaceURI("b", "urn:backend");
+                        fill(section, backend);
+                    }, executor));
+                }
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+                assertSame(root, assembler.seal());
+                assertEquals(XmlNode.write(expected, "response"), XmlNode.write(root, "response"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSectionHeadsMoveToTheRoot() throws IOException {
+        XmlNode root = new XmlNode(JsonNodeFactory.instance);
+        root.putAttribute("id", "r1");
+        root.put("meta", "first");
+        XmlNodeAssembler assembler = new XmlNodeAssembler(root);
+        XmlNode first = assembler.reserve();
+        XmlNode second = assembler.reserve();
+        second.putNamespaceURI("x", "urn:x").putAttribute("x", "source", "b");
+        second.putObject("value", "x").setValue(2);
+        first.putObject("value").setValue(1);
+        XmlNode tail = new XmlNode(JsonNodeFactory.instance);
+        tail.setValue("end");
+        assembler.add("tail", tail);
+        assembler.seal();
+
+        String expected = "<response xmlns:x=\"urn:x\" id=\"r1\" x:source=\"b\"><meta>first</meta>" +
+                "<x:value>1</x:value><x:value>2</x:value><tail>end</tail></response>";
+        String outputXml = XmlNode.write(root, "response");
+        System.out.printf("%s%n", outputXml);
+        assertThat(outputXml).and(expected).areIdentical();
+        assertThrows(IllegalStateException.class, assembler::seal);
+        assertThrows(IllegalStateException.class, assembler::reserve);
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        XmlNode root = new XmlNode(JsonNodeFactory.instance);
+        XmlNodeAssembler assembler = new XmlNodeAssembler(root);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    assembler.add("n", root.numberNode(offset + i));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assembler.seal();
+        Set<Integer> values = new HashSet<>();
+        root.getAll("n").forEach(node -> values.add(node.intValue()));
+        assertEquals(8000, root.size());
+        assertEquals(8000, values.size());
+    }
+}
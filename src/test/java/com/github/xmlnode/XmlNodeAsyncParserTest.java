@@ -0,0 +1,69 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlNodeAsyncParserTest {
+
+    private static XmlNode feedInChunks(XmlNodeAsyncParser parser, byte[] xml, int chunkSize) throws IOException {
+        XmlNode completed = null;
+        for (int i = 0; i < xml.length; i += chunkSize) {
+            XmlNode node = parser.feed(xml, i, Math.min(chunkSize, xml.length - i));
+            if (node != null)
+                completed = node;
+        }
+        parser.endOfInput();
+        return completed;
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.github.xmlnode.XmlNodeTest#getParameters")
+    public void testMatchesBlockingParse(String inputXml, String rootName) throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        String expected = codec.write(codec.read(inputXml));
+        byte[] xml = inputXml.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize : new int[]{1, 7, xml.length}) {
+            try (XmlNodeAsyncParser parser = codec.newAsyncParser()) {
+                String outputXml = codec.write(feedInChunks(parser, xml, chunkSize));
+                System.out.printf("%s%n%n", outputXml);
+                assertEquals(expected, outputXml);
+            }
+        }
+    }
+
+    @Test
+    public void testBuildsWhileInputArrives() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("feed");
+        XmlNodeAsyncParser parser = codec.newAsyncParser();
+        assertNull(parser.feed(ByteBuffer.wrap("<?xml version=\"1.0\"?><feed><record id=\"1\">caf".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(parser.isDone());
+        assertEquals("1", ((XmlNode) parser.getRoot().get("record")).getAttribute("id"));
+
+        // A multi-byte character split across chunks, fed from a direct buffer
+        byte[] rest = "é <![CDATA[<b>]]></record><record id=\"2\"/></feed>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(rest.length);
+        direct.put(rest, 0, 1).flip();
+        assertNull(parser.feed(direct));
+        direct.clear();
+        direct.put(rest, 1, rest.length - 1).flip();
+        XmlNode node = parser.feed(direct);
+        assertNotNull(node);
+        assertTrue(parser.isDone());
+        assertEquals("<feed><record id=\"1\"><![CDATA[café <b>]]></record><record id=\"2\"/></feed>", codec.write(node));
+        parser.feed(ByteBuffer.wrap("<!-- trailer -->".getBytes(StandardCharsets.UTF_8)));
+        parser.endOfInput();
+
+        XmlNodeAsyncParser truncated = codec.newAsyncParser();
+        assertNull(truncated.feed(ByteBuffer.wrap("<feed><record>".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IOException.class, truncated::endOfInput);
+        XmlNodeAsyncParser malformed = codec.newAsyncParser();
+        assertThrows(IOException.class, () -> malformed.feed(ByteBuffer.wrap("<feed></record>".getBytes(StandardCharsets.UTF_8))));
+    }
+}
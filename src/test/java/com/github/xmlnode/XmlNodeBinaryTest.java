@@ -0,0 +1,95 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlNodeBinaryTest {
+
+    private static byte[] encode(XmlNode... nodes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (XmlNodeBinaryWriter writer = new XmlNodeBinaryWriter(bytes)) {
+            for (XmlNode node : nodes)
+                writer.write(node);
+        }
+        return bytes.toByteArray();
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.github.xmlnode.XmlNodeTest#getParameters")
+    public void testRoundTrip(String inputXml, String rootName) throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        XmlNode node = codec.read(inputXml);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.writeBinary(node, bytes);
+        XmlNode decoded = codec.readBinary(new ByteArrayInputStream(bytes.toByteArray()));
+        System.out.printf("%d bytes of XML, %d bytes binary%n", inputXml.length(), bytes.size());
+        assertEquals(codec.write(node), codec.write(decoded));
+    }
+
+    @Test
+    public void testTypesAndMultipleDocuments() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("Random");
+        XmlNode node = new XmlNode(codec.getXmlMapper().getNodeFactory());
+        node.putNamespaceURI("ex", "http://example.com/ex");
+        node.putAttribute("basic", true).putAttribute("i", 500f).putAttribute("d", -0.1d).putAttribute("l", -1L << 40)
+                .putAttribute("s", (short) -3).putAttribute("big", new BigDecimal("1.50")).putAttribute("ex", "tag", "ü<");
+        XmlNode examples = node.putObject("Examples", "ex");
+        examples.put("Kiwi", BigInteger.TEN.pow(30).negate()).put("Data", "binary".getBytes(StandardCharsets.UTF_8))
+                .put("Long", String.join("", Collections.nCopies(10000, "x")));
+        examples.putObject("Note").setValue(new CDATANode("<raw>"));
+        examples.putNull("Nothing");
+
+        XmlNode second = XmlNodeCodec.getDefault().read("<Random><Examples>OK</Examples></Random>");
+        XmlNodeBinaryReader reader = new XmlNodeBinaryReader(new ByteArrayInputStream(encode(node, second)),
+                codec.getXmlMapper().getNodeFactory());
+        XmlNode decoded = reader.read();
+        assertEquals(codec.write(node), codec.write(decoded));
+        assertEquals(500f, decoded.getAttribute("i"));
+        assertEquals((short) -3, decoded.getAttribute("s"));
+        assertEquals(new BigDecimal("1.50"), decoded.getAttribute("big"));
+        assertEquals("ex", decoded.getAttributePrefix("tag"));
+        assertTrue(decoded.get("Examples").get("Note").get("@text") instanceof CDATANode);
+        assertTrue(((XmlNode) decoded.get("Examples").get("Kiwi")).isLeaf());
+        assertEquals(codec.write(second), codec.write(reader.read()));
+        assertNull(reader.read());
+
+        examples.putPOJO("Jet", new Jet("Gulfstream", "G280", BigInteger.ONE, Collections.emptyList()));
+        assertThrows(IOException.class, () -> encode(node));
+        assertThrows(IOException.class, () -> codec.readBinary(new ByteArrayInputStream("<xml/>".getBytes())));
+    }
+
+    @Test
+    public void testSmallerThanXmlAndDeep() throws IOException {
+        StringBuilder wide = new StringBuilder("<feed>");
+        for (int i = 0; i < 1000; i++)
+            wide.append("<record id=\"").append(i).append("\"><status>OK</status><name>item ").append(i)
+                    .append("</name></record>");
+        String xml = wide.append("</feed>").toString();
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("feed");
+        XmlNode node = codec.read(xml);
+        byte[] binary = encode(node);
+        System.out.printf("%d bytes of XML, %d bytes binary%n", xml.length(), binary.length);
+        assertTrue(binary.length < xml.length() / 2);
+        assertEquals(xml, codec.write(codec.readBinary(new ByteArrayInputStream(binary))));
+
+        XmlNode deepNode = new XmlNode(codec.getXmlMapper().getNodeFactory());
+        XmlNode current = deepNode;
+        for (int i = 0; i < 5000; i++)
+            current = current.putObject("level");
+        XmlNode decoded = codec.readBinary(new ByteArrayInputStream(encode(deepNode)));
+        for (int i = 0; i < 5000; i++)
+            decoded = (XmlNode) decoded.get("level");
+        assertTrue(decoded.isEmpty());
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlNodeCodecTest {
+
+    @Test
+    public void testParseAndWriteRoundTrip() throws JsonProcessingException {
+        String inputXml = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+                "<soapenv:Body><data><![CDATA[Some <CDATA> content]]></data></soapenv:Body>" +
+                "</soapenv:Envelope>";
+        XmlNode node = XmlNode.parse(inputXml);
+        String outputXml = XmlNode.write(node, "soapenv:Envelope");
+        System.out.printf("%s%n%n%s%n%n", inputXml, outputXml);
+        assertThat(outputXml).and(inputXml).areIdentical();
+        assertTrue(outputXml.contains("<![CDATA[Some <CDATA> content]]>"));
+    }
+
+    @Test
+    public void testToStringMatchesFreshMapper() throws JsonProcessingException {
+        XmlNode node = new XmlNode(XmlNodeCodec.getDefault().getXmlMapper().getNodeFactory());
+        node.putAttribute("id", 7);
+        node.put("name", "value");
+        XmlMapper freshMapper = XmlMapper.xmlBuilder().findAndAddModules().build();
+        assertEquals(freshMapper.writeValueAsString(node), node.toString());
+        assertEquals(freshMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node), node.toPrettyString());
+    }
+
+    @Test
+    public void testConfiguredCodecs() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault();
+        assertSame(codec, codec.withRootName(null));
+        assertSame(codec, codec.withPrettyPrinting(false));
+
+        XmlNodeCodec pretty = codec.withRootName("greeting").withPrettyPrinting(true);
+        assertNotSame(codec, pretty);
+        assertEquals("greeting", pretty.getRootName());
+        assertTrue(pretty.isPrettyPrinting());
+        assertSame(codec.getXmlMapper(), pretty.getXmlMapper());
+
+        XmlNode node = XmlNode.parse("<greeting><to>World</to></greeting>");
+        assertEquals("<greeting>\n  <to>World</to>\n</greeting>\n", pretty.write(node));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlNode.write(node, "greeting", out);
+        assertEquals("<greeting><to>World</to></greeting>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(codec.withRootName("greeting").write(node), XmlNode.write(node, "greeting"));
+        assertEquals(codec.write(node), XmlNode.write(node, null));
+    }
+
+    @Test
+    public void testCodecOfCustomMapper() throws JsonProcessingException {
+        XmlMapper xmlMapper = new XmlMapper();
+        XmlNodeCodec codec = XmlNodeCodec.of(xmlMapper);
+        assertSame(xmlMapper, codec.getXmlMapper());
+        XmlNode node = codec.read("<a><b>1</b></a>");
+        assertEquals("<a><b>1</b></a>", codec.withRootName("a").write(node));
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("item");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String xml = "<item id=\"" + i + "\">value " + i + "</item>";
+                results.add(executor.submit(() -> codec.write(codec.read(xml))));
+            }
+            for (int i = 0; i < results.size(); i++)
+                assertEquals("<item id=\"" + i + "\">value " + i + "</item>", results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdjacentTextIsCoalesced() throws JsonProcessingException {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            longText.append("chunk ").append(i).append(" &amp; ");
+        String inputXml = "<doc>\n  <mixed>one <![CDATA[<two>]]> three</mixed>\n  <long>" + longText + "end</long>\n  <empty>   </empty>\n</doc>";
+        XmlNode node = XmlNode.parse(inputXml);
+
+        XmlNode mixed = (XmlNode) node.get("mixed");
+        assertEquals(1, mixed.size());
+        assertTrue(mixed.get("@text") instanceof CDATANode);
+        assertEquals("one <two> three", mixed.get("@text").asText());
+        assertEquals(1, node.get("long").size());
+        assertEquals(longText.toString().replace("&amp;", "&") + "end", node.get("long").get("@text").asText());
+        assertEquals(0, node.get("empty").size());
+        assertEquals(3, node.size());
+
+        String outputXml = XmlNode.write(node, "doc");
+        assertTrue(outputXml.contains("<mixed><![CDATA[one <two> three]]></mixed>"), outputXml);
+
+        XmlNode wrapped = new XmlNode(XmlNodeCodec.getDefault().getXmlMapper().getNodeFactory());
+        wrapped.setValue(new CDATANode("<![CDATA[x]]>"));
+        assertEquals("x", wrapped.get("@text").asText());
+        assertEquals("<c><![CDATA[x]]></c>", XmlNode.write(wrapped, "c"));
+    }
+
+    @Test
+    public void testCdataSectionEndIsWrittenAsText() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("r");
+        String[][] cases = {
+                {"<r><a><![CDATA[if (x[y[0]]]]><![CDATA[> 1) {}]]></a></r>", "if (x[y[0]]> 1) {}", "<r><a>if (x[y[0]]&gt; 1) {}</a></r>"},
+                {"<r><a>x]]&gt;y<![CDATA[z]]></a></r>", "x]]>yz", "<r><a>x]]&gt;yz</a></r>"},
+        };
+        for (String[] example : cases) {
+            XmlNode node = codec.read(example[0]);
+            assertEquals(example[1], node.get("a").get("@text").asText());
+            assertFalse(node.get("a").get("@text") instanceof CDATANode);
+            for (String outputXml : new String[]{codec.write(node), codec.writeDirect(node)}) {
+                System.out.printf("%s%n", outputXml);
+                assertThat(outputXml).and(example[2]).areIdentical();
+                assertEquals(example[1], codec.read(outputXml).get("a").get("@text").asText());
+            }
+        }
+    }
+
+    @Test
+    public void testReadFromBuffersAndMappedFiles(@TempDir Path dir) throws IOException {
+        String inputXml = "<Random xmlns:ex=\"http://example.com/ex\" id=\"ü\"><ex:Examples>Hello, World!</ex:Examples>" +
+                "<Note><![CDATA[<raw>]]></Note></Random>";
+        byte[] xml = inputXml.getBytes(StandardCharsets.UTF_8);
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("Random");
+
+        byte[] padded = new byte[xml.length + 10];
+        System.arraycopy(xml, 0, padded, 4, xml.length);
+        assertEquals(inputXml, codec.write(codec.read(padded, 4, xml.length)));
+
+        ByteBuffer heap = ByteBuffer.wrap(padded, 4, xml.length).slice();
+        assertEquals(inputXml, codec.write(codec.read(heap)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length + 2);
+        direct.put((byte) ' ').put(xml).flip().position(1);
+        assertEquals(inputXml, codec.write(codec.read(direct)));
+        assertEquals(1, direct.position());
+
+        Path file = dir.resolve("random.xml");
+        Files.write(file, xml);
+        assertEquals(inputXml, codec.write(codec.read(file)));
+        try (XmlRecordReader records = codec.readRecords(file, "/Random/Note")) {
+            assertEquals("<raw>", records.next().get("@text").asText());
+            assertFalse(records.hasNext());
+        }
+
+        // Regions far smaller than the document exercise reads that straddle mapping boundaries
+        try (InputStream in = new ByteBufferInputStream(FileChannel.open(file), 7)) {
+            assertEquals(inputXml, codec.write(codec.getReader().readValue(in)));
+        }
+        try (InputStream in = new ByteBufferInputStream(FileChannel.open(file), 7)) {
+            assertEquals(10, in.skip(10));
+            byte[] rest = new byte[xml.length];
+            int n = 0;
+            for (int r; (r = in.read(rest, n, rest.length - n)) > 0; )
+                n += r;
+            assertEquals(xml.length - 10, n);
+            assertEquals(-1, in.read());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlNodePoolTest {
+    private static final String ORDER = "<order xmlns:a=\"urn:a\" id=\"1\"><a:customer a:vip=\"true\"><name>n</name></a:customer>" +
+            "<items><item sku=\"s1\">1</item><item sku=\"s2\">2<![CDATA[<x>]]></item></items><total>3</total></order>";
+    private static final String OTHER = "<order><note>second</note></order>";
+
+    @Test
+    public void testResetKeepsNothingButCapacity() throws IOException {
+        XmlNode node = new XmlNode(JsonNodeFactory.instance);
+        node.putNamespaceURI("a", "urn:a").putAttribute("a", "id", 1);
+        for (int i = 0; i < 10; i++)
+            node.putObject("item", "a").setValue(i);
+        assertEquals(10, node.getAll("item").size());
+        assertSame(node, node.reset());
+        assertTrue(node.isEmpty());
+        assertNull(node.get("item"));
+        assertNull(node.getAttribute("id"));
+        assertNull(node.getNamespaceURI("a"));
+        assertNull(node.getElementPrefix("item"));
+        assertNull(node.getAttributePrefix("id"));
+        node.put("item", 1);
+        assertEquals("<r><item>1</item></r>", XmlNode.write(node, "r"));
+        assertEquals(1, node.getAll("item").size());
+
+        XmlNode frozen = node.freeze();
+        assertThrows(UnsupportedOperationException.class, frozen::reset);
+        XmlNode copy = frozen.copyOnWrite().reset();
+        assertTrue(copy.isEmpty());
+        assertEquals(1, frozen.size());
+    }
+
+    @Test
+    public void testPooledTreesReadLikeNewOnes() throws IOException {
+        XmlNodePool pool = new XmlNodePool(1000);
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("order");
+        XmlNodeCodec pooled = codec.withPool(pool);
+        assertSame(pooled, pooled.withPool(pool));
+        String expected = codec.write(codec.read(ORDER));
+        String expectedOther = codec.write(codec.read(OTHER));
+        for (int i = 0; i < 3; i++) {
+            XmlNode node = pooled.read(ORDER);
+            assertEquals(expected, pooled.write(node));
+            pool.release(node);
+            assertEquals(7, pool.size());
+            XmlNode other = pooled.read(new ByteArrayInputStream(OTHER.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(5, pool.size());
+            assertEquals(expectedOther, pooled.write(other));
+            pool.release(other);
+        }
+        XmlNode fresh = pool.acquire();
+        assertTrue(fresh.isEmpty());
+        assertTrue(fresh.getAttributes().isEmpty());
+    }
+
+    @Test
+    public void testReadIntoReusesTheRoot() throws IOException {
+        XmlNodePool pool = new XmlNodePool(1000);
+        XmlNodeCodec plain = XmlNodeCodec.getDefault().withRootName("order");
+        String expected = plain.write(plain.read(ORDER));
+        String expectedOther = plain.write(plain.read(OTHER));
+        for (XmlNodeCodec codec : new XmlNodeCodec[]{plain, plain.withPool(pool)}) {
+            XmlNode root = new XmlNode(JsonNodeFactory.instance);
+            assertSame(root, codec.readInto(ORDER, root));
+            assertEquals(expected, codec.write(root));
+            assertEquals("1", root.getAttribute("id"));
+            assertSame(root, codec.readInto(new ByteArrayInputStream(OTHER.getBytes(StandardCharsets.UTF_8)), root));
+            assertEquals(expectedOther, codec.write(root));
+            assertNull(root.getAttribute("id"));
+            assertNull(root.getNamespaceURI("a"));
+        }
+        // The six descendants from the first document went back to the pool, one came out again for the second
+        assertEquals(5, pool.size());
+    }
+
+    @Test
+    public void testReleaseLeavesSharedNodesAlone() throws IOException {
+        XmlNodePool pool = new XmlNodePool(1000);
+        XmlNode template = XmlNode.parse(ORDER).freeze();
+        String original = XmlNode.write(template, "order");
+        XmlNode copy = template.copyOnWrite();
+        ((XmlNode) copy.get("items")).put("item", 3);
+        pool.release(copy);
+        // Every node of the copy is recycled, but none of the frozen nodes it still shares
+        assertEquals(7, pool.size());
+        assertEquals(original, XmlNode.write(template, "order"));
+        pool.release(template);
+        assertEquals(7, pool.size());
+
+        // A node reachable twice is recycled once, and the stack stops at its bound
+        XmlNode root = new XmlNode(JsonNodeFactory.instance);
+        XmlNode child = root.putObject("a");
+        root.set("b", child);
+        pool.release(root);
+        assertEquals(9, pool.size());
+        assertNotSame(pool.acquire(), pool.acquire());
+        XmlNodePool small = new XmlNodePool(3);
+        small.release(XmlNode.parse(ORDER));
+        assertEquals(3, small.size());
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlNodeStaxWriterTest {
+
+    // Every root child in a batch of its own, so that small documents take the parallel path too
+    private static String writeParallel(XmlNodeCodec codec, XmlNode node, ForkJoinPool pool)
+            throws IOException, XMLStreamException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XMLStreamWriter writer = codec.getXmlMapper().getFactory().getXMLOutputFactory().createXMLStreamWriter(bytes, "UTF-8");
+        codec.getStaxWriter().writeParallel(node, writer, bytes, pool, 1);
+        writer.close();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.github.xmlnode.XmlNodeTest#getParameters")
+    public void testMatchesObjectWriter(String inputXml, String rootName) throws Exception {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        XmlNode node = codec.read(inputXml);
+        String expected = codec.write(node);
+        String outputXml = codec.writeDirect(node);
+        System.out.printf("%s%n%n%s%n%n", expected, outputXml);
+        assertEquals(expected, outputXml);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertEquals(expected, writeParallel(codec, node, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTypedValuesAndPojos() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("Random");
+        XmlNode node = new XmlNode(codec.getXmlMapper().getNodeFactory());
+        node.putNamespaceURI("ex", "http://example.com/ex");
+        node.putAttribute("basic", true).putAttribute("i", 500f).putAttribute("d", 0.1d).putAttribute("l", 1L << 40)
+                .putAttribute("big", new BigDecimal("1E+3")).putAttribute("ex", "tag", "<&\"'>");
+        XmlNode examples = node.putObject("Examples", "ex");
+        examples.put("Puppy", true).putAttribute("lovable", 10);
+        examples.put("Apple", 2d).put("Pear", 1.5f).put("Plum", (short) 3).put("Fig", 7L)
+                .put("Kiwi", BigInteger.TEN.pow(30)).put("Lime", new BigDecimal("12.50"))
+                .put("Data", "binary".getBytes(StandardCharsets.UTF_8)).put("Text", "a < b & c");
+        examples.putPOJO("Jet", new Jet("Gulfstream", "G280", BigInteger.valueOf(1037),
+                Arrays.asList(new Owner("Joe", 36, "M"), new Owner("Lisa", 42, "F"))));
+        examples.putObject("Note").setValue(new CDATANode("<raw>"));
+        examples.putObject("Empty");
+        examples.putNull("Nothing");
+
+        String expected = codec.write(node);
+        String outputXml = codec.writeDirect(node);
+        System.out.printf("%s%n%n%s%n%n", expected, outputXml);
+        assertEquals(expected, outputXml);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.writeDirect(node, bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(XmlNodeCodec.getDefault().write(node), XmlNodeCodec.getDefault().writeDirect(node));
+        assertEquals(codec.withPrettyPrinting(true).write(node), codec.withPrettyPrinting(true).writeDirect(node));
+    }
+
+    @Test
+    public void testPlainJsonContainersAreRejected() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault();
+        XmlNode node = codec.read("<r><a>1</a></r>");
+        assertEquals(codec.write(node), codec.writeDirect(node));
+
+        node.set("obj", JsonNodeFactory.instance.objectNode().put("x", 1));
+        JsonGenerationException written = assertThrows(JsonGenerationException.class, () -> codec.write(node));
+        JsonGenerationException direct = assertThrows(JsonGenerationException.class, () -> codec.writeDirect(node));
+        System.out.printf("%s%n", direct.getOriginalMessage());
+        assertEquals(written.getOriginalMessage(), direct.getOriginalMessage());
+        assertTrue(direct.getOriginalMessage().contains("'obj'"));
+    }
+
+    @Test
+    public void testParallelWideTree() throws Exception {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("ex:feed");
+        XmlNode node = new XmlNode(codec.getXmlMapper().getNodeFactory());
+        node.putNamespaceURI("ex", "http://example.com/ex");
+        node.putAttribute("count", 3000);
+        for (int i = 0; i < 3000; i++) {
+            XmlNode record = node.putObject("record", i % 2 == 0 ? "ex" : null);
+            record.putAttribute("id", i).putAttribute("ex", "tag", "<&>");
+            record.put("Total", new BigDecimal(i + ".50")).put("Text", "a < b & c " + i).put("Flag", i % 3 == 0);
+            record.putObject("Note").setValue(new CDATANode("<raw " + i + ">"));
+            if (i % 500 == 0)
+                record.putPOJO("Jet", new Jet("Gulfstream", "G280", BigInteger.valueOf(i), Arrays.asList(new Owner("Joe", 36, "M"))));
+        }
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        codec.writeDirect(node, direct);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            codec.writeParallel(node, parallel, pool);
+            assertArrayEquals(direct.toByteArray(), parallel.toByteArray());
+
+            XmlNode lazy = codec.withRootName("soapenv:Envelope").readLazy(LazyChildNodeTest.SOAP);
+            assertEquals(codec.withRootName("soapenv:Envelope").write(lazy), writeParallel(codec.withRootName("soapenv:Envelope"), lazy, pool));
+
+            // Children that write nothing keep the root an empty element
+            XmlNode nulls = new XmlNode(codec.getXmlMapper().getNodeFactory());
+            for (int i = 0; i < 2; i++)
+                nulls.addChild(new ChildNode("@text", codec.getXmlMapper().getNodeFactory().nullNode(), true));
+            assertEquals(codec.writeDirect(nulls), writeParallel(codec, nulls, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLazyAndDeepTrees() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("soapenv:Envelope");
+        XmlNode lazy = codec.readLazy(LazyChildNodeTest.SOAP);
+        assertEquals(codec.write(lazy), codec.writeDirect(lazy));
+
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            xml.append("<level depth=\"").append(i).append("\">");
+        for (int i = 0; i < 100; i++)
+            xml.append("</level>");
+        XmlNode deep = XmlNodeCodec.getDefault().read(xml.toString());
+        assertEquals(xml.toString(), XmlNodeCodec.getDefault().withRootName("level").writeDirect(deep)
+                .replace("<level depth=\"99\"/>", "<level depth=\"99\"></level>"));
+    }
+}
@@ -2,11 +2,14 @@ package com.github.xmlnode;
 
 import com.ctc.wstx.stax.WstxInputFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.xml.deser.FromXmlParser;
 import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -18,10 +21,19 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.xmlunit.assertj.XmlAssert.assertThat;
 
 public class XmlNodeTest {
@@ -667,4 +679,404 @@ public class XmlNodeTest {
         System.out.printf("%s%n%n%s%n%n", inputXml, outputXml);
         assertThat(outputXml).and(inputXml).areIdentical();
     }
+
+    @Test
+    public void testIndexedChildLookup() throws JsonProcessingException {
+        String inputXml = "<feed><record id=\"1\">a</record><meta>m</meta><record id=\"2\">b</record><record id=\"3\">c</record></feed>";
+        XmlNode node = xmlMapper.readValue(inputXml, XmlNode.class);
+
+        List<JsonNode> records = node.getAll("record");
+        assertEquals(3, records.size());
+        assertEquals("1", ((XmlNode) records.get(0)).getAttribute("id"));
+        assertEquals("3", ((XmlNode) records.get(2)).getAttribute("id"));
+        assertSame(records.get(0), node.get("record"));
+        assertTrue(node.getAll("missing").isEmpty());
+
+        node.remove(0);
+        assertEquals("2", ((XmlNode) node.get("record")).getAttribute("id"));
+        assertEquals(2, node.getAll("record").size());
+
+        node.put("record", "d");
+        assertEquals(3, node.getAll("record").size());
+        assertEquals("d", node.getAll("record").get(2).get("@text").asText());
+
+        node.retain("record");
+        assertFalse(node.has("meta"));
+        node.without("record");
+        assertFalse(node.has("record"));
+        assertTrue(node.isEmpty());
+
+        node.putIfAbsent("meta", node.textNode("x"));
+        assertEquals("x", node.putIfAbsent("meta", node.textNode("y")).asText());
+        assertEquals("x", node.replace("meta", node.textNode("z")).asText());
+        assertEquals("z", node.get("meta").asText());
+    }
+
+    @Test
+    public void testPrefixIndexes() throws IOException {
+        XmlNode root = new XmlNode(xmlMapper.getNodeFactory());
+        root.putNamespaceURI("a", "urn:a");
+        root.putObject("item", "a").put("v", 1);
+        root.putObject("item", "a").put("v", 2);
+        root.putObject("other", "a");
+        root.putObject("plain");
+        root.putAttribute("a", "x", 1).putAttribute("a", "y", 2);
+
+        assertEquals(Arrays.asList("item", "other"), root.getNamespaceElements("a"));
+        assertEquals("a", root.getElementPrefix("item"));
+        assertNull(root.getElementPrefix("plain"));
+        assertEquals("a", root.getAttributePrefix("x"));
+        assertEquals("a", root.getAttributePrefix("y"));
+
+        String xml = XmlNode.write(root, "root");
+        System.out.printf("%s%n", xml);
+        String expected = "<root xmlns:a=\"urn:a\" a:x=\"1\" a:y=\"2\"><a:item><v>1</v></a:item><a:item><v>2</v></a:item><a:other/><plain/></root>";
+        assertThat(xml).and(expected).areIdentical();
+
+        // Putting a prefixed attribute again without a prefix drops the old one
+        root.putAttribute(null, "x", 3).putAttribute(" ", "y", 4);
+        assertNull(root.getAttributePrefix("x"));
+        assertNull(root.getAttributePrefix("y"));
+        xml = XmlNode.write(root, "root");
+        System.out.printf("%s%n", xml);
+        expected = "<root xmlns:a=\"urn:a\" x=\"3\" y=\"4\"><a:item><v>1</v></a:item><a:item><v>2</v></a:item><a:other/><plain/></root>";
+        assertThat(xml).and(expected).areIdentical();
+        assertEquals(xml, XmlNodeCodec.getDefault().withRootName("root").writeDirect(root));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "getParameters")
+    public void testFrozenSnapshotWritesLikeTheSource(String inputXml, String rootName) throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        XmlNode node = codec.read(inputXml);
+        XmlNode frozen = node.freeze();
+        assertTrue(frozen.isFrozen());
+        assertFalse(node.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(codec.write(node), codec.write(frozen));
+        assertEquals(codec.writeDirect(node), codec.writeDirect(frozen));
+        assertEquals(codec.write(node), codec.write(codec.readLazy(inputXml).freeze()));
+    }
+
+    @Test
+    public void testFrozenSnapshotRejectsMutation() throws Exception {
+        XmlNode node = XmlNode.parse("<root xmlns:a=\"urn:a\" id=\"1\"><a:item>x</a:item><item>y</item></root>");
+        XmlNode frozen = node.freeze();
+        XmlNode item = (XmlNode) frozen.get("item");
+        List<Executable> mutations = Arrays.asList(
+                () -> frozen.put("new", 1),
+                () -> frozen.putObject("new"),
+                () -> frozen.set("new", frozen.textNode("x")),
+                () -> frozen.replace("item", frozen.textNode("x")),
+                () -> frozen.remove("item"),
+                () -> frozen.remove(0),
+                () -> frozen.without("item"),
+                () -> frozen.retain("other"),
+                () -> frozen.removeAll(),
+                () -> frozen.putAttribute("id", 2),
+                () -> frozen.getAttributes().put("id", 2),
+                () -> frozen.putNamespaceURI("b", "urn:b"),
+                () -> item.setValue("z"));
+        for (Executable mutation : mutations)
+            assertThrows(UnsupportedOperationException.class, mutation);
+        assertEquals(XmlNode.write(node, "root"), XmlNode.write(frozen, "root"));
+
+        // The source stays mutable and the snapshot does not see later changes
+        node.put("new", 1);
+        assertNull(frozen.get("new"));
+        assertEquals(2, frozen.getAll("item").size());
+        assertEquals("a", frozen.getElementPrefix("item"));
+        assertEquals("1", frozen.getAttribute("id"));
+        XmlNode copy = frozen.deepCopy();
+        assertFalse(copy.isFrozen());
+        copy.put("new", 1);
+    }
+
+    @Test
+    public void testFrozenSnapshotConcurrentReads() throws Exception {
+        StringBuilder sb = new StringBuilder("<feed>");
+        for (int i = 0; i < 200; i++)
+            sb.append("<record").append(i % 20).append(" id=\"").append(i).append("\"><v>").append(i).append("</v></record").append(i % 20).append('>');
+        XmlNode frozen = XmlNode.parse(sb.append("</feed>").toString()).freeze();
+        String expected = XmlNode.write(frozen, "feed");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 20; i++)
+                        assertEquals(10, frozen.getAll("record" + (i + offset) % 20).size());
+                    assertEquals("199", XmlPath.compile("//record19[10]/v").selectFirst(frozen).get("@text").asText());
+                    return XmlNode.write(frozen, "feed");
+                }));
+            }
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "getParameters")
+    public void testCopyOnWriteWritesLikeTheSource(String inputXml, String rootName) throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName(rootName);
+        XmlNode node = codec.read(inputXml);
+        String expected = codec.write(node);
+        assertEquals(expected, codec.write(node.copyOnWrite()));
+        assertEquals(expected, codec.write(node.deepCopy()));
+        assertEquals(codec.writeDirect(node), codec.writeDirect(node.freeze().copyOnWrite()));
+
+        // Walking every node of the copy makes all of it private without changing the output
+        XmlNode copy = node.copyOnWrite();
+        XmlPath.compile("//*").select(copy);
+        assertEquals(expected, codec.write(copy));
+        assertEquals(expected, codec.write(node));
+    }
+
+    @Test
+    public void testCopyOnWriteIsolatesEdits() throws IOException {
+        XmlNode template = XmlNode.parse("<order xmlns:a=\"urn:a\" id=\"1\"><a:customer><name>n</name></a:customer>" +
+                "<items><item sku=\"s1\">1</item><item sku=\"s2\">2</item></items><total>3</total></order>").freeze();
+        String original = XmlNode.write(template, "order");
+        XmlNode first = template.copyOnWrite();
+        XmlNode second = template.copyOnWrite();
+        assertFalse(first.isFrozen());
+
+        ((XmlNode) first.get("customer").get("name")).removeAll().setValue("first");
+        ((XmlNode) first.get("items")).putObject("item").putAttribute("sku", "s3").setValue(3);
+        first.putAttribute("id", "2");
+        first.putNamespaceURI("b", "urn:b");
+        ((XmlNode) second.get("items").get(1)).putAttribute("sku", "changed");
+        second.remove("total");
+
+        String firstXml = XmlNode.write(first, "order");
+        String secondXml = XmlNode.write(second, "order");
+        System.out.printf("%s%n%s%n", firstXml, secondXml);
+        assertEquals(original, XmlNode.write(template, "order"));
+        assertThat(firstXml).and("<order xmlns:a=\"urn:a\" xmlns:b=\"urn:b\" id=\"2\"><a:customer><name>first</name></a:customer>" +
+                "<items><item sku=\"s1\">1</item><item sku=\"s2\">2</item><item sku=\"s3\">3</item></items><total>3</total></order>").areIdentical();
+        assertThat(secondXml).and("<order xmlns:a=\"urn:a\" id=\"1\"><a:customer><name>n</name></a:customer>" +
+                "<items><item sku=\"s1\">1</item><item sku=\"changed\">2</item></items></order>").areIdentical();
+
+        // Untouched subtrees are still shared, and a copy of a copy is isolated from both
+        assertSame(((XmlNode) template.get("customer"))._children, ((XmlNode) second.get("customer"))._children);
+        XmlNode third = first.copyOnWrite();
+        third.put("total", 4);
+        assertEquals(firstXml, XmlNode.write(first, "order"));
+        assertEquals(2, third.getAll("total").size());
+    }
+
+    @Test
+    public void testPropertiesKeepOrderAndRepeatedNames() throws IOException {
+        XmlNode node = XmlNode.parse("<r><a>1</a><b>2</b><a>3</a></r>");
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> property : node.properties()) {
+            names.add(property.getKey());
+            values.add(property.getValue().get(0).asText());
+        }
+        assertEquals(Arrays.asList("a", "b", "a"), names);
+        assertEquals(Arrays.asList("1", "2", "3"), values);
+        assertEquals(3, node.properties().size());
+        assertThrows(UnsupportedOperationException.class, () -> node.properties().iterator().next().setValue(null));
+
+        List<String> fieldNames = new ArrayList<>();
+        node.fieldNames().forEachRemaining(fieldNames::add);
+        assertEquals(names, fieldNames);
+        Iterator<JsonNode> elements = node.elements();
+        for (JsonNode value : node.getValues())
+            assertSame(value, elements.next());
+        assertFalse(elements.hasNext());
+        assertThrows(NoSuchElementException.class, elements::next);
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        node.put("c", 4);
+        assertEquals(4, node.properties().size());
+        int count = 0;
+        while (fields.hasNext()) {
+            fields.next();
+            count++;
+        }
+        assertEquals(4, count);
+    }
+
+    @Test
+    public void testVisitorWalksTheWholeTree() throws IOException {
+        XmlNode node = XmlNode.parse("<order xmlns:a=\"urn:a\" id=\"1\"><a:customer a:vip=\"true\"><name>n</name></a:customer>" +
+                "<items><item sku=\"s1\">1</item><item sku=\"s2\">2<![CDATA[<x>]]></item></items><skip><deep/></skip></order>");
+        StringBuilder events = new StringBuilder();
+        node.accept(new XmlNodeVisitor() {
+            @Override
+            public boolean enter(String name, String prefix, XmlNode element) {
+                events.append('<').append(prefix == null ? "" : prefix + ':').append(name);
+                return !name.equals("skip");
+            }
+
+            @Override
+            public void attribute(String name, String prefix, Object value) {
+                events.append(' ').append(prefix == null ? "" : prefix + ':').append(name).append('=').append(value);
+            }
+
+            @Override
+            public void text(JsonNode value) {
+                events.append('[').append(value.asText()).append(']');
+            }
+
+            @Override
+            public void leave(String name, String prefix, XmlNode element) {
+                events.append("</").append(name).append('>');
+            }
+        });
+        System.out.printf("%s%n", events);
+        assertEquals(" id=1<a:customer a:vip=true<name[n]</name></customer><items<item sku=s1[1]</item>" +
+                "<item sku=s2[2<x>]</item></items><skip", events.toString());
+
+        // Deep documents need no deep call stack
+        XmlNode deep = new XmlNode(JsonNodeFactory.instance);
+        XmlNode current = deep;
+        for (int i = 0; i < 100_000; i++)
+            current = current.putObject("d");
+        current.setValue("bottom");
+        int[] counts = new int[3];
+        deep.accept(new XmlNodeVisitor() {
+            @Override
+            public boolean enter(String name, String prefix, XmlNode element) {
+                counts[0]++;
+                return true;
+            }
+
+            @Override
+            public void text(JsonNode value) {
+                counts[1]++;
+            }
+
+            @Override
+            public void leave(String name, String prefix, XmlNode element) {
+                counts[2]++;
+            }
+        });
+        assertArrayEquals(new int[]{100_000, 1, 100_000}, counts);
+    }
+
+    @Test
+    public void testFindMethodsSearchInDocumentOrder() throws IOException {
+        XmlNode node = XmlNode.parse("<r><a><id>1</id><b><id>2</id></b></a><id>3</id><c><d><id>4</id></d><id>5</id></c></r>");
+        assertEquals("3", node.findValue("id").get(0).asText());
+        assertEquals("1", node.get("a").findValue("id").get(0).asText());
+        assertSame(node.get("c"), node.get("c").findParent("id"));
+        assertNull(node.findValue("absent"));
+        assertNull(node.findParent("absent"));
+
+        List<String> ids = new ArrayList<>();
+        for (JsonNode id : node.findValues("id"))
+            ids.add(id.get(0).asText());
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), ids);
+        assertEquals(5, node.findValuesAsText("id").size());
+        List<JsonNode> parents = node.findParents("id");
+        assertEquals(5, parents.size());
+        assertSame(node.get("a"), parents.get(0));
+        assertSame(node.get("a").get("b"), parents.get(1));
+        assertSame(node, parents.get(2));
+        assertSame(node.get("c").get("d"), parents.get(3));
+        assertSame(node.get("c"), parents.get(4));
+        assertTrue(node.findValues("absent").isEmpty());
+    }
+
+    @Test
+    public void testNameSummariesFollowMutations() throws IOException {
+        XmlNode node = XmlNode.parse("<r><a><b><c>1</c></b></a><e/></r>");
+        XmlNode b = (XmlNode) node.get("a").get("b");
+        assertNull(node.findValue("x"));
+        b.putObject("x").setValue(1);
+        assertNotNull(node.findValue("x"));
+        b.remove("x");
+        assertNull(node.findValue("x"));
+
+        // A summary reused by a later search is invalidated with it
+        XmlNode e = (XmlNode) node.get("e");
+        assertNull(e.findValue("y"));
+        assertNull(node.findValue("y"));
+        e.putObject("y");
+        assertSame(e, node.findParent("y"));
+        e.reset();
+        assertNull(node.findParent("y"));
+        ((XmlNode) node.get("a")).replace("b", JsonNodeFactory.instance.objectNode().put("y", 2));
+        assertEquals(2, node.findValue("y").asInt());
+
+        // Snapshots are summarized once, copies of them follow their own edits
+        XmlNode frozen = XmlNode.parse("<r><a><b><c>1</c></b></a></r>").freeze();
+        XmlNode copy = frozen.copyOnWrite();
+        assertNull(copy.findValue("x"));
+        assertNotNull(copy.findValue("c"));
+        ((XmlNode) copy.get("a").get("b")).put("x", 1);
+        assertNotNull(copy.findValue("x"));
+        assertNull(frozen.findValue("x"));
+        assertEquals(1, copy.findValues("x").size());
+    }
+
+    @Test
+    public void testFindOnDeepDocuments() throws IOException {
+        XmlNode deep = new XmlNode(JsonNodeFactory.instance);
+        XmlNode current = deep;
+        for (int i = 0; i < 10_000; i++)
+            current = current.putObject("d");
+        current.putObject("leaf").setValue(1);
+        for (XmlNode node : new XmlNode[]{deep, deep.freeze()}) {
+            assertNull(node.findValue("absent"));
+            assertNotNull(node.findValue("leaf"));
+            assertNotNull(node.findParent("leaf"));
+            assertEquals(1, node.findValues("leaf").size());
+            assertEquals(1, node.findParents("leaf").size());
+            assertEquals(1, node.findValues("d").size());
+            assertTrue(node.findValuesAsText("absent").isEmpty());
+        }
+    }
+
+    @Test
+    public void testJsonArraysAreRejected() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("r");
+        XmlNode node = new XmlNode(JsonNodeFactory.instance);
+        node.put("a", 1);
+        assertThrows(UnsupportedOperationException.class, () -> node.putArray("arr"));
+        assertThrows(UnsupportedOperationException.class, () -> node.withArray("arr"));
+        assertThrows(UnsupportedOperationException.class, () -> node.set("arr", JsonNodeFactory.instance.arrayNode().add(1)));
+        assertThrows(UnsupportedOperationException.class, () -> node.replace("a", JsonNodeFactory.instance.arrayNode()));
+        assertThrows(UnsupportedOperationException.class, () -> node.setValue(JsonNodeFactory.instance.arrayNode()));
+        node.withObject("/w");
+        assertEquals("<r><a>1</a><w/></r>", codec.write(node));
+        assertEquals("<r><a>1</a><w/></r>", codec.writeDirect(node));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testInheritedObjectNodeMutatorsUseTheChildren() throws IOException {
+        XmlNodeCodec codec = XmlNodeCodec.getDefault().withRootName("r");
+        JsonNodeFactory factory = JsonNodeFactory.instance;
+        XmlNode node = new XmlNode(factory);
+        XmlNode value = new XmlNode(factory);
+        value.setValue("v");
+        assertNull(node.put("a", value));
+        assertSame(value, node.put("a", new XmlNode(factory).put("b", 1)));
+        assertEquals("<r><a><b>1</b></a></r>", codec.write(node));
+
+        XmlNode other = new XmlNode(factory).put("c", 2);
+        node.putAll(other);
+        node.putAll(Collections.singletonMap("d", (JsonNode) new XmlNode(factory).put("e", 3)));
+        assertEquals("<r><a><b>1</b></a><c>2</c><d><e>3</e></d></r>", codec.write(node));
+
+        assertSame(node.get("a"), node.with("a"));
+        assertSame(node.get("d"), node.withObjectProperty("d"));
+        ((XmlNode) node.with("f")).put("g", 4);
+        ((XmlNode) node.withObjectProperty("h")).put("i", 5);
+        assertEquals("<r><a><b>1</b></a><c>2</c><d><e>3</e></d><f><g>4</g></f><h><i>5</i></h></r>", codec.write(node));
+        assertThrows(UnsupportedOperationException.class, () -> node.with("x").withArray("y"));
+        assertThrows(UnsupportedOperationException.class, () -> node.withArrayProperty("z"));
+        UnsupportedOperationException e = assertThrows(UnsupportedOperationException.class, () -> node.withArray("z"));
+        assertTrue(e.getMessage().contains("'z'"), e.getMessage());
+
+        assertSame(node.get("c"), node.required("c"));
+        assertThrows(IllegalArgumentException.class, () -> node.required("absent"));
+        assertEquals("<r><a><b>1</b></a><c>2</c><d><e>3</e></d><f><g>4</g></f><h><i>5</i></h><x/></r>", codec.write(node));
+    }
 }
@@ -0,0 +1,84 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlPathTest {
+    private static final String ORDERS = "<orders xmlns:inv=\"http://example.com/invoice\" xmlns:alt=\"http://example.com/invoice\">\n" +
+            "  <order id=\"a\" status=\"open\"><item sku=\"1\"/><item sku=\"2\"/><inv:Total>10</inv:Total></order>\n" +
+            "  <order id=\"b\"><item sku=\"3\"/><bundle><item sku=\"4\"/><item sku=\"5\"/></bundle><item sku=\"6\"/></order>\n" +
+            "  <order id=\"c\" status=\"open\"><alt:Total>7</alt:Total></order>\n" +
+            "  <archive><order id=\"d\"><item sku=\"7\"/></order></archive>\n" +
+            "</orders>";
+
+    private static List<Object> select(String path, XmlNode root, String attribute) {
+        return XmlPath.compile(path).select(root).stream().map(node -> node.getAttribute(attribute)).collect(Collectors.toList());
+    }
+
+    private static List<Object> list(Object... values) {
+        return Arrays.asList(values);
+    }
+
+    @Test
+    public void testChildAndDescendantSteps() throws IOException {
+        XmlNode root = XmlNodeCodec.getDefault().read(ORDERS);
+        assertEquals(list("a", "b", "c"), select("order", root, "id"));
+        assertEquals(select("order", root, "id"), select("/order", root, "id"));
+        assertEquals(list("a", "b", "c", "d"), select("//order", root, "id"));
+        assertEquals(list("1", "2", "3", "6"), select("order/item", root, "sku"));
+        assertEquals(list("1", "2", "3", "4", "5", "6", "7"), select("//item", root, "sku"));
+        assertEquals(list("4", "5", "7"), select("*/*/item", root, "sku"));
+        assertEquals(list("7"), select("archive//item", root, "sku"));
+        assertTrue(XmlPath.compile("order/missing").select(root).isEmpty());
+        assertNull(XmlPath.compile("//missing").selectFirst(root));
+        assertEquals("10", XmlPath.compile("order/Total").selectFirst(root).get("@text").asText());
+    }
+
+    @Test
+    public void testPredicates() throws IOException {
+        XmlNode root = XmlNodeCodec.getDefault().read(ORDERS);
+        assertEquals(list("b"), select("order[2]", root, "id"));
+        // Positions count among each parent's matches, as in XPath
+        assertEquals(list("1", "3", "4", "7"), select("//item[1]", root, "sku"));
+        assertEquals(list("c"), select("order[@id='c']", root, "id"));
+        assertEquals(list("a", "c"), select("order[@status]", root, "id"));
+        assertEquals(list("c"), select("order[@status=\"open\"][2]", root, "id"));
+        assertTrue(select("order[2][@status='open']", root, "id").isEmpty());
+        assertEquals(list("6"), select("order[@id='b']/item[2]", root, "sku"));
+    }
+
+    @Test
+    public void testNamespacePrefixes() throws IOException {
+        XmlNode root = XmlNodeCodec.getDefault().read(ORDERS);
+        assertEquals(1, XmlPath.compile("order/inv:Total").select(root).size());
+        assertEquals(1, XmlPath.compile("order/alt:*").select(root).size());
+        // Bound prefixes match any prefix declared with the same URI
+        XmlPath bound = XmlPath.compile("//x:Total", Collections.singletonMap("x", "http://example.com/invoice"));
+        assertEquals(list("10", "7"), bound.select(root).stream().map(node -> node.get("@text").asText())
+                .collect(Collectors.toList()));
+        assertTrue(XmlPath.compile("//x:Total", Collections.singletonMap("x", "urn:other")).select(root).isEmpty());
+    }
+
+    @Test
+    public void testNestedMatchesStayInDocumentOrder() throws IOException {
+        XmlNode root = XmlNodeCodec.getDefault().read("<r><x id=\"1\"><y id=\"2\"/><x id=\"3\"><y id=\"4\"/></x><y id=\"5\"/></x></r>");
+        assertEquals(list("1", "3"), select("//x", root, "id"));
+        assertEquals(list("2", "4", "5"), select("//x/y", root, "id"));
+        assertEquals(list("2", "4", "5"), select("//x//y", root, "id"));
+        assertEquals("2", XmlPath.compile("//x/y").selectFirst(root).getAttribute("id"));
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        for (String path : new String[]{"", "/", "a//", "a[0]", "a[", "a[@id=x]", "a[@id='x'", "a/[1]", "a b"})
+            assertThrows(IllegalArgumentException.class, () -> XmlPath.compile(path), path);
+        assertEquals("order[@id='a']/item", XmlPath.compile("order[@id='a']/item").toString());
+    }
+}
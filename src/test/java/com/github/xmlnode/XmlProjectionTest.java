@@ -0,0 +1,92 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlProjectionTest {
+    private static final String RESPONSE = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">\n" +
+            "  <soapenv:Header><ns1:AuthToken xmlns:ns1=\"http://example.com/weather\">ABC123</ns1:AuthToken></soapenv:Header>\n" +
+            "  <soapenv:Body>\n" +
+            "    <ns1:GetWeatherResponse xmlns:ns1=\"http://example.com/weather\" requestId=\"42\">\n" +
+            "      <ns1:Location>Nairobi</ns1:Location>\n" +
+            "      <ns1:Forecast>\n" +
+            "        <ns1:Day date=\"2023-10-01\"><ns1:Temperature unit=\"C\">22</ns1:Temperature></ns1:Day>\n" +
+            "        <ns1:Day date=\"2023-10-02\"><ns1:Temperature unit=\"C\">20</ns1:Temperature><ns1:Note><![CDATA[<rain>]]></ns1:Note></ns1:Day>\n" +
+            "        <ns1:Day date=\"2023-10-03\"><ns1:Temperature unit=\"C\">25</ns1:Temperature></ns1:Day>\n" +
+            "      </ns1:Forecast>\n" +
+            "    </ns1:GetWeatherResponse>\n" +
+            "  </soapenv:Body>\n" +
+            "</soapenv:Envelope>";
+
+    private static XmlNodeCodec codec(String... paths) {
+        XmlPath[] compiled = new XmlPath[paths.length];
+        for (int i = 0; i < paths.length; i++)
+            compiled[i] = XmlPath.compile(paths[i]);
+        return XmlNodeCodec.getDefault().withRootName("soapenv:Envelope").withProjection(compiled);
+    }
+
+    @Test
+    public void testKeepsMatchesAndTheirAncestors() throws IOException {
+        XmlNodeCodec codec = codec("Header/AuthToken", "Body/GetWeatherResponse/Forecast/Day[2]");
+        String outputXml = codec.write(codec.read(RESPONSE));
+        String expectedXml = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+                "<soapenv:Header><ns1:AuthToken xmlns:ns1=\"http://example.com/weather\">ABC123</ns1:AuthToken></soapenv:Header>" +
+                "<soapenv:Body><ns1:GetWeatherResponse xmlns:ns1=\"http://example.com/weather\" requestId=\"42\"><ns1:Forecast>" +
+                "<ns1:Day date=\"2023-10-02\"><ns1:Temperature unit=\"C\">20</ns1:Temperature><ns1:Note><![CDATA[<rain>]]></ns1:Note></ns1:Day>" +
+                "</ns1:Forecast></ns1:GetWeatherResponse></soapenv:Body></soapenv:Envelope>";
+        System.out.printf("%s%n%n", outputXml);
+        assertThat(outputXml).and(expectedXml).areIdentical();
+    }
+
+    @Test
+    public void testSelectsTheSameNodesAsTheFullTree() throws IOException {
+        String[] paths = {"//Temperature", "Body/*/Forecast/Day[@date='2023-10-03']", "//Day[1]/Temperature[@unit]",
+                "Body/GetWeatherResponse/Location", "//ns1:Note"};
+        XmlNode full = XmlNodeCodec.getDefault().read(RESPONSE);
+        for (String path : paths) {
+            XmlPath query = XmlPath.compile(path);
+            XmlNode projected = codec(path).read(RESPONSE.getBytes(StandardCharsets.UTF_8), 0, RESPONSE.length());
+            List<XmlNode> expected = query.select(full);
+            List<XmlNode> actual = query.select(projected);
+            assertFalse(expected.isEmpty(), path);
+            assertEquals(expected.size(), actual.size(), path);
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(XmlNode.write(expected.get(i), "match"), XmlNode.write(actual.get(i), "match"), path);
+        }
+    }
+
+    @Test
+    public void testPositionsCountEverySibling() throws IOException {
+        // The first path matches every Day; the second still has to count them to find the third
+        XmlNode node = codec("Body/*/Forecast/Day[1]", "Body/*/Forecast/Day[3]").read(RESPONSE);
+        List<XmlNode> days = XmlPath.compile("//Day").select(node);
+        assertEquals(2, days.size());
+        assertEquals("2023-10-01", days.get(0).getAttribute("date"));
+        assertEquals("2023-10-03", days.get(1).getAttribute("date"));
+    }
+
+    @Test
+    public void testNamespaceBoundPaths() throws IOException {
+        XmlPath path = XmlPath.compile("//w:Location", Collections.singletonMap("w", "http://example.com/weather"));
+        XmlNode node = XmlNodeCodec.getDefault().withProjection(path).read(RESPONSE);
+        assertEquals("Nairobi", path.selectFirst(node).get("@text").asText());
+        assertNull(node.get("Header"));
+    }
+
+    @Test
+    public void testNoMatchKeepsOnlyTheRoot() throws IOException {
+        XmlNode node = codec("Body/Missing").read(RESPONSE);
+        assertTrue(node.isEmpty());
+        assertEquals("http://schemas.xmlsoap.org/soap/envelope/", node.getNamespaceURI("soapenv"));
+        assertSame(XmlNodeCodec.getDefault(), XmlNodeCodec.getDefault().withProjection());
+        assertEquals(XmlNodeCodec.getDefault().read(RESPONSE).size(),
+                codec("Body/Missing").withProjection().read(RESPONSE).size());
+    }
+}
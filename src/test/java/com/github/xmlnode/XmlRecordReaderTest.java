@@ -0,0 +1,76 @@
+package com.github.xmlnode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlRecordReaderTest {
+    private static final String FEED = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<feed xmlns:inv=\"http://example.com/invoice\">\n" +
+            "  <header><record id=\"ignored\"/></header>\n" +
+            "  <record id=\"1\"><inv:Total currency=\"USD\">10.50</inv:Total><note><![CDATA[<b>first</b>]]></note></record>\n" +
+            "  <other><nested><record id=\"ignored\"/></nested></other>\n" +
+            "  <record id=\"2\"><inv:Total currency=\"EUR\">7</inv:Total></record>\n" +
+            "  <record id=\"3\"/>\n" +
+            "</feed>";
+
+    @Test
+    public void testSplitsMatchingRecords() throws IOException {
+        List<XmlNode> records = new ArrayList<>();
+        try (XmlRecordReader reader = XmlNodeCodec.getDefault().readRecords(new StringReader(FEED), "/feed/record")) {
+            while (reader.hasNext())
+                records.add(reader.next());
+            assertFalse(reader.hasNext());
+        }
+        assertEquals(3, records.size());
+        assertEquals("1", records.get(0).getAttribute("id"));
+        assertEquals("3", records.get(2).getAttribute("id"));
+        assertEquals("7", records.get(1).get("Total").get("@text").asText());
+
+        String outputXml = XmlNode.write(records.get(0), "record");
+        String expectedXml = "<record xmlns:inv=\"http://example.com/invoice\" id=\"1\">" +
+                "<inv:Total currency=\"USD\">10.50</inv:Total><note><![CDATA[<b>first</b>]]></note></record>";
+        System.out.printf("%s%n%n", outputXml);
+        assertThat(outputXml).and(expectedXml).areIdentical();
+    }
+
+    @Test
+    public void testNestedAndPrefixedPaths() throws IOException {
+        try (Stream<XmlNode> totals = XmlNodeCodec.getDefault()
+                .readRecords(new StringReader(FEED), "/feed/record/inv:Total").stream()) {
+            assertEquals(Stream.of("USD", "EUR").collect(Collectors.toList()),
+                    totals.map(total -> total.getAttribute("currency")).collect(Collectors.toList()));
+        }
+        try (XmlRecordReader reader = XmlNodeCodec.getDefault().readRecords(new StringReader(FEED), "/feed/record/other:Total")) {
+            assertFalse(reader.hasNext());
+        }
+        try (XmlRecordReader reader = XmlNodeCodec.getDefault().readRecords(new StringReader(FEED), "/invoice/record")) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void testInvalidPath() {
+        assertThrows(IllegalArgumentException.class,
+                () -> XmlNodeCodec.getDefault().readRecords(new StringReader(FEED), "/feed//record"));
+    }
+
+    @Test
+    public void testManyRecords() throws IOException {
+        StringBuilder sb = new StringBuilder("<feed>");
+        for (int i = 0; i < 10_000; i++)
+            sb.append("<record><id>").append(i).append("</id></record>");
+        sb.append("</feed>");
+        try (Stream<XmlNode> records = XmlNodeCodec.getDefault().readRecords(new StringReader(sb.toString()), "feed/record").stream()) {
+            assertEquals(49_995_000L, records.mapToLong(record -> record.get("id").get("@text").asLong()).sum());
+        }
+    }
+}
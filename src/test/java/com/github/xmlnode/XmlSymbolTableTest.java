@@ -0,0 +1,71 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlSymbolTableTest {
+
+    private static String feed(int items) {
+        StringBuilder sb = new StringBuilder("<inv:feed xmlns:inv=\"http://example.com/invoice\">");
+        for (int i = 0; i < items; i++)
+            sb.append("<inv:item currency=\"").append(i % 2 == 0 ? "USD" : "EUR").append("\">")
+                    .append("<status>OK</status><amount>").append(i).append(".99</amount></inv:item>");
+        return sb.append("</inv:feed>").toString();
+    }
+
+    @Test
+    public void testNamesAndValuesAreShared() throws JsonProcessingException {
+        XmlSymbolTable symbols = XmlSymbolTable.withValueCache(256);
+        XmlNodeCodec codec = XmlNodeCodec.create(symbols);
+        String inputXml = feed(100);
+        XmlNode node = codec.read(inputXml);
+
+        List<JsonNode> items = node.getAll("item");
+        assertEquals(100, items.size());
+        XmlNode first = (XmlNode) items.get(0);
+        XmlNode last = (XmlNode) items.get(99);
+        assertSame(node._children.get(0).getAttributeName(), node._children.get(99).getAttributeName());
+        assertSame(first._children.get(0).getAttributeName(), last._children.get(0).getAttributeName());
+        assertSame(first.get("status").get("@text"), last.get("status").get("@text"));
+        assertSame(first.getAttribute("currency"), ((XmlNode) items.get(2)).getAttribute("currency"));
+        assertNotSame(first.get("amount").get("@text"), last.get("amount").get("@text"));
+
+        assertTrue(symbols.getSymbolHits() > 0);
+        assertTrue(symbols.getValueHitRate() > 0.5, symbols.toString());
+        assertThat(codec.withRootName("inv:feed").write(node)).and(inputXml).areIdentical();
+
+        symbols.resetCounters();
+        assertEquals(0, symbols.getSymbolHits() + symbols.getSymbolMisses());
+        assertEquals(0d, symbols.getValueHitRate());
+    }
+
+    @Test
+    public void testBoundedAndConfigurable() {
+        XmlSymbolTable symbols = new XmlSymbolTable(1, 1, 3);
+        String a = new String("alpha");
+        assertSame(a, symbols.symbol(a));
+        assertSame(a, symbols.symbol(new String("alpha")));
+        String b = new String("beta");
+        assertSame(b, symbols.symbol(b));
+        assertSame(b, symbols.symbol(new String("beta")));
+        assertNull(symbols.symbol(null));
+
+        assertSame(symbols.textValue("USD"), symbols.textValue(new String("USD")));
+        assertNotSame(symbols.textValue("long value"), symbols.textValue("long value"));
+        assertEquals(1, symbols.getValueHits());
+        assertSame(symbols.textValue("USD"), symbols.textValue("[USD]".toCharArray(), 1, 3));
+        assertEquals("long value", symbols.textValue("long value".toCharArray(), 0, 10).textValue());
+
+        XmlSymbolTable disabled = new XmlSymbolTable(0, 0, 0);
+        String c = new String("gamma");
+        assertSame(c, disabled.symbol(c));
+        assertNotSame(disabled.textValue("x"), disabled.textValue("x"));
+        assertThrows(IllegalArgumentException.class, () -> new XmlSymbolTable(-1, 0, 0));
+    }
+}
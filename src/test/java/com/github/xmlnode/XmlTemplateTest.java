@@ -0,0 +1,109 @@
+package com.github.xmlnode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.xmlunit.assertj.XmlAssert.assertThat;
+
+public class XmlTemplateTest {
+    private static final XmlNodeCodec CODEC = XmlNodeCodec.getDefault().withRootName("soapenv:Envelope");
+
+    // The same response, with the variable parts taken from fill: holes for the template, values for the reference
+    private static XmlNode response(Function<String, JsonNode> fill) {
+        XmlNode envelope = new XmlNode(JsonNodeFactory.instance);
+        envelope.putNamespaceURI("soapenv", "http://schemas.xmlsoap.org/soap/envelope/");
+        XmlNode header = envelope.putObject("Header", "soapenv");
+        header.putObject("MessageID", "wsa").putNamespaceURI("wsa", "http://www.w3.org/2005/08/addressing")
+                .setValue(fill.apply("id"));
+        XmlNode response = envelope.putObject("Body", "soapenv").putObject("GetWeatherResponse", "ns1");
+        response.putNamespaceURI("ns1", "http://example.com/weather");
+        response.putAttribute("requestId", fill.apply("id"));
+        response.putAttribute("note", fill.apply("note"));
+        response.putObject("Location", "ns1").setValue(fill.apply("location"));
+        XmlNode day = response.putObject("Forecast", "ns1").putObject("Day", "ns1");
+        day.putAttribute("date", "2023-10-01");
+        day.putObject("Temperature", "ns1").putAttribute("unit", "C").setValue(fill.apply("temperature"));
+        day.putObject("Fresh", "ns1").setValue(fill.apply("fresh"));
+        return envelope;
+    }
+
+    @Test
+    public void testRendersLikeTheFilledInTree() throws IOException {
+        XmlTemplate template = CODEC.compileTemplate(response(XmlTemplate::hole));
+        assertEquals(Arrays.asList("id", "note", "location", "temperature", "fresh"), template.getHoleNames());
+        String[][] cases = {
+                {"42", "plain", "Nairobi"},
+                {"a&b", "<\"quoted\" & 'single'>\r\n\tend", "Mombasa <coast> & \"beach\"\r\n\t]]>"},
+                {"\u00e9\u4e2d\ud83d\ude00", "", "\u007f\u0085\u00a0"},
+        };
+        for (String[] values : cases) {
+            Map<String, JsonNode> nodes = new HashMap<>();
+            nodes.put("id", JsonNodeFactory.instance.textNode(values[0]));
+            nodes.put("note", JsonNodeFactory.instance.textNode(values[1]));
+            nodes.put("location", JsonNodeFactory.instance.textNode(values[2]));
+            nodes.put("temperature", JsonNodeFactory.instance.numberNode(-3.5));
+            nodes.put("fresh", JsonNodeFactory.instance.booleanNode(true));
+            Map<String, Object> plain = new HashMap<>(nodes);
+            plain.put("id", values[0]);
+            plain.put("temperature", -3.5);
+            plain.put("fresh", true);
+
+            String expected = CODEC.writeDirect(response(nodes::get));
+            String outputXml = template.render(nodes);
+            System.out.printf("%s%n", outputXml);
+            assertThat(outputXml).and(expected).areIdentical();
+            if (!String.join("", values).contains(">"))
+                assertEquals(expected, outputXml);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            template.render(plain, out);
+            assertEquals(outputXml, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testXmlNodeValuesBecomeElementContent() throws IOException {
+        XmlNode page = new XmlNode(JsonNodeFactory.instance);
+        page.putObject("title").setValue(XmlTemplate.hole("title"));
+        page.putObject("items").setValue(XmlTemplate.hole("items"));
+        XmlTemplate template = XmlNodeCodec.getDefault().withRootName("page").compileTemplate(page);
+
+        XmlNode items = new XmlNode(JsonNodeFactory.instance);
+        items.putObject("item", "x").putNamespaceURI("x", "urn:x").putAttribute("id", 1).setValue("first");
+        items.putObject("entry").setValue("<second>");
+        Map<String, Object> values = new HashMap<>();
+        values.put("title", null);
+        values.put("items", items);
+        String outputXml = template.render(values);
+        System.out.printf("%s%n", outputXml);
+        assertThat(outputXml).and("<page><title/><items><x:item xmlns:x=\"urn:x\" id=\"1\">first</x:item>" +
+                "<entry>&lt;second&gt;</entry></items></page>").areIdentical();
+
+        XmlNode declaring = new XmlNode(JsonNodeFactory.instance).putNamespaceURI("x", "urn:x");
+        values.put("items", declaring);
+        assertThrows(IllegalArgumentException.class, () -> template.render(values));
+        assertThrows(IllegalArgumentException.class, () -> template.render(Collections.singletonMap("title", "t")));
+    }
+
+    @Test
+    public void testInvalidHolesAndValues() throws IOException {
+        XmlNode node = new XmlNode(JsonNodeFactory.instance);
+        node.putAttribute("id", XmlTemplate.hole("id"));
+        XmlTemplate template = XmlNodeCodec.getDefault().withRootName("r").compileTemplate(node);
+        assertEquals("<r id=\"7\"/>", template.render(Collections.singletonMap("id", 7)));
+        assertThrows(IllegalArgumentException.class, () -> template.render(Collections.singletonMap("id", node)));
+        assertThrows(IOException.class, () -> template.render(Collections.singletonMap("id", "\u0001")));
+        assertThrows(IllegalArgumentException.class, () -> XmlTemplate.hole(""));
+        assertThrows(IllegalArgumentException.class, () -> XmlTemplate.hole("a\uE000"));
+    }
+}